@@ -1,10 +1,11 @@
 package assignment_motion_planning;
 
-import java.util.List;
+import java.util.Random;
 
 public class Benchmark {
     private static final String PLANAR_ROBOT_ENVIRONMENT = "planar_robot_environment";
     private static final String ROBOT_ARM_ENVIRONMENT = "robot_arm_environment";
+    private static final String HANOVER = "hanover";
     private static final int TESTS = 50;
     
     @SuppressWarnings("boxing")
@@ -25,8 +26,7 @@ public class Benchmark {
             long beforeCount = environment.getCDCount();
             Trajectory result = mp.solve(start, goal);
             count[i] = environment.getCDCount() - beforeCount;
-            List<Vector> path = robot.interpolate(start, result, 0.1);
-            Vector finalConfig = path.get(path.size() - 1);
+            Vector finalConfig = getFinalConfiguration(robot, start, result, 0.1);
             error[i] = robot.getMetric(goal, finalConfig);
             rate[i] = mp.getFreeSampleRate();
             length[i] = result.totalTime();
@@ -34,6 +34,7 @@ public class Benchmark {
                     error[i], rate[i], length[i], count[i]));
             
         }
+        System.out.println(environment.getMetrics().snapshot());
     }
     
     @SuppressWarnings("boxing")
@@ -54,19 +55,71 @@ public class Benchmark {
             mp.grow(100);
             Trajectory result = mp.query(start, goal);
             count[i] = environment.getCDCount() - beforeCount;
-            List<Vector> path = robot.interpolate(start, result, 0.1);
-            Vector finalConfig = path.get(path.size() - 1);
+            Vector finalConfig = getFinalConfiguration(robot, start, result, 0.1);
             error[i] = robot.getMetric(goal, finalConfig);
             rate[i] = mp.getFreeSampleRate();
             length[i] = result.totalTime();
             System.out.println(String.format("Error: %f Sample rate: %f Length: %f Collision Detection: %d", 
                     error[i], rate[i], length[i], count[i]));
         }
+        System.out.println(mp.getMetricsSnapshot());
+    }
+    
+    /**
+     * Follow a trajectory with the interpolation cursor
+     * @param robot       the robot
+     * @param start       the begin configuration
+     * @param trajectory  the trajectory
+     * @param resolution  resolution for interpolation
+     * @return the configuration at the end of the trajectory
+     */
+    private static Vector getFinalConfiguration(Robot robot, Vector start, Trajectory trajectory, double resolution) {
+        double[] configuration = new double[robot.getDimension()];
+        Robot.Interpolation cursor = robot.getInterpolation().reset(start, trajectory, resolution);
+        while (cursor.next(configuration)) {
+            // keep the last configuration
+        }
+        return new Vector(configuration);
+    }
+    
+    /**
+     * Cross-check the collision checkers against each other on random configurations
+     */
+    @SuppressWarnings("boxing")
+    public static void collisionCheckers() {
+        Environment environment = new Environment(HANOVER);
+        Robot[] robots = { PlanarRobot.getDifferentialDrive(), PlanarRobot.getOmnidirectionalRobot(), RobotArm.getRobotArm(4) };
+        Random random = new Random(0);
+        for (Robot robot : robots) {
+            Vector[] samples = new Vector[TESTS * 100];
+            for (int i = 0; i < samples.length; ++i)
+                samples[i] = robot.getRandomConfiguration(environment, random);
+            int mismatches = 0;
+            long[] time = new long[Environment.CollisionChecker.values().length];
+            for (Vector sample : samples) {
+                boolean[] results = new boolean[time.length];
+                for (Environment.CollisionChecker checker : Environment.CollisionChecker.values()) {
+                    long before = System.nanoTime();
+                    results[checker.ordinal()] = environment.isValidConfiguration(robot, sample, checker);
+                    time[checker.ordinal()] += System.nanoTime() - before;
+                }
+                for (boolean result : results)
+                    if (result != results[0]) {
+                        ++mismatches;
+                        break;
+                    }
+            }
+            System.out.println(String.format("%s: %d mismatches in %d samples, Area: %f ms, Polygon: %f ms", 
+                    robot.getClass().getSimpleName(), mismatches, samples.length,
+                    time[Environment.CollisionChecker.AREA.ordinal()] / 1e6,
+                    time[Environment.CollisionChecker.POLYGON.ordinal()] / 1e6));
+        }
     }
     
     public static final void main(String[] args) {
         planarRobot();
         //robotArm();
+        //collisionCheckers();
     }
     
 }
@@ -0,0 +1,184 @@
+package assignment_motion_planning;
+
+/**
+ * Static tree of axis-aligned bounding boxes, built top-down by splitting at the median
+ * centroid along the longest axis. Nodes are stored in flat arrays and queries write
+ * into caller-supplied buffers, so a query allocates nothing.
+ */
+public class BoundingVolumeHierarchy {
+    private static final int LEAF_SIZE = 4;  // maximum number of items in a leaf
+    private final double[] boxes;   // (minX, minY, maxX, maxY) of each item
+    private final int[] items;      // item indices, grouped by leaf
+    private final double[] bounds;  // (minX, minY, maxX, maxY) of each node
+    private final int[] left;       // left child of each node, or -1 for a leaf
+    private final int[] right;      // right child of each node, or -1 for a leaf
+    private final int[] start;      // first position in items of each node
+    private final int[] end;        // position after the last in items of each node
+    private int numberOfNodes = 0;
+    private int depth = 0;
+
+    /**
+     * Constructor
+     * @param boxes (minX, minY, maxX, maxY) of each item
+     */
+    public BoundingVolumeHierarchy(double[] boxes) {
+        assert(boxes.length % 4 == 0);
+        this.boxes = boxes;
+        int n = boxes.length / 4;
+        items = new int[n];
+        for (int i = 0; i < n; ++i)
+            items[i] = i;
+        int capacity = Math.max(1, 2 * n - 1);
+        bounds = new double[4 * capacity];
+        left = new int[capacity];
+        right = new int[capacity];
+        start = new int[capacity];
+        end = new int[capacity];
+        if (n > 0)
+            build(0, n, 1);
+    }
+
+    /**
+     * Get the number of items
+     * @return the number of items
+     */
+    public int size() {
+        return items.length;
+    }
+
+    /**
+     * Get the size of the stack a query needs
+     * @return the stack size
+     */
+    public int getStackSize() {
+        return depth + 1;
+    }
+
+    /**
+     * Get the bounds of an item
+     * @param item  the item
+     * @param side  0 for minX, 1 for minY, 2 for maxX, 3 for maxY
+     * @return the coordinate
+     */
+    public double getBound(int item, int side) {
+        return boxes[4 * item + side];
+    }
+
+    /**
+     * Build the subtree over items[from, to)
+     * @param from   first position
+     * @param to     position after the last
+     * @param level  depth of the new node
+     * @return the new node
+     */
+    private int build(int from, int to, int level) {
+        int node = numberOfNodes++;
+        depth = Math.max(depth, level);
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        double cMinX = Double.POSITIVE_INFINITY, cMinY = Double.POSITIVE_INFINITY;
+        double cMaxX = Double.NEGATIVE_INFINITY, cMaxY = Double.NEGATIVE_INFINITY;
+        for (int i = from; i < to; ++i) {
+            int b = 4 * items[i];
+            minX = Math.min(minX, boxes[b]);
+            minY = Math.min(minY, boxes[b + 1]);
+            maxX = Math.max(maxX, boxes[b + 2]);
+            maxY = Math.max(maxY, boxes[b + 3]);
+            cMinX = Math.min(cMinX, centroid(items[i], 0));
+            cMinY = Math.min(cMinY, centroid(items[i], 1));
+            cMaxX = Math.max(cMaxX, centroid(items[i], 0));
+            cMaxY = Math.max(cMaxY, centroid(items[i], 1));
+        }
+        bounds[4 * node] = minX;
+        bounds[4 * node + 1] = minY;
+        bounds[4 * node + 2] = maxX;
+        bounds[4 * node + 3] = maxY;
+        start[node] = from;
+        end[node] = to;
+        if (to - from <= LEAF_SIZE) {
+            left[node] = right[node] = -1;
+            return node;
+        }
+        int axis = cMaxX - cMinX >= cMaxY - cMinY ? 0 : 1;
+        int middle = (from + to) >>> 1;
+        select(from, to, middle, axis);
+        left[node] = build(from, middle, level + 1);
+        right[node] = build(middle, to, level + 1);
+        return node;
+    }
+
+    /**
+     * Centroid of an item along an axis
+     * @param item  the item
+     * @param axis  0 for x and 1 for y
+     * @return the coordinate of the centroid, doubled
+     */
+    private double centroid(int item, int axis) {
+        return boxes[4 * item + axis] + boxes[4 * item + axis + 2];
+    }
+
+    /**
+     * Partially sort items[from, to) so that position k holds the item it would hold if
+     * sorted by centroid, with smaller ones before and larger ones after (quickselect)
+     */
+    private void select(int from, int to, int k, int axis) {
+        int lo = from, hi = to - 1;
+        while (lo < hi) {
+            double pivot = centroid(items[(lo + hi) >>> 1], axis);
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (centroid(items[i], axis) < pivot)
+                    ++i;
+                while (centroid(items[j], axis) > pivot)
+                    --j;
+                if (i <= j) {
+                    int temp = items[i];
+                    items[i] = items[j];
+                    items[j] = temp;
+                    ++i;
+                    --j;
+                }
+            }
+            if (k <= j)
+                hi = j;
+            else if (k >= i)
+                lo = i;
+            else
+                return;
+        }
+    }
+
+    /**
+     * Find all items whose boxes overlap a query box; touching boxes count as overlapping
+     * @param minX    minimum x of the query box
+     * @param minY    minimum y of the query box
+     * @param maxX    maximum x of the query box
+     * @param maxY    maximum y of the query box
+     * @param stack   buffer of at least getStackSize() elements
+     * @param result  buffer of at least size() elements that receives the items
+     * @return the number of items found
+     */
+    public int query(double minX, double minY, double maxX, double maxY, int[] stack, int[] result) {
+        if (numberOfNodes == 0)
+            return 0;
+        int found = 0, top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            int b = 4 * node;
+            if (bounds[b] > maxX || bounds[b + 1] > maxY || bounds[b + 2] < minX || bounds[b + 3] < minY)
+                continue;
+            if (left[node] >= 0) {
+                stack[top++] = right[node];
+                stack[top++] = left[node];
+                continue;
+            }
+            for (int i = start[node]; i < end[node]; ++i) {
+                int c = 4 * items[i];
+                if (boxes[c] <= maxX && boxes[c + 1] <= maxY && boxes[c + 2] >= minX && boxes[c + 3] >= minY)
+                    result[found++] = items[i];
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,278 @@
+package assignment_motion_planning;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Bounded cache of collision results keyed by configuration quantized to a tolerance:
+ * configurations whose coordinates fall in the same cell of a grid with that spacing
+ * share one result. A cell holds whether the robot is collision-free there and the
+ * clearance computed there, if any, each answering for the other when it can. The cache
+ * is split into independently locked segments, each evicting its least recently used
+ * entry, so it is safe for concurrent access.
+ */
+public class CollisionCache {
+    private static final int SEGMENTS = 16;
+    private final double tolerance;
+    private final int capacity;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Constructor
+     * @param capacity   the maximum number of cached results
+     * @param tolerance  the spacing of the quantization grid
+     */
+    public CollisionCache(int capacity, double tolerance) {
+        assert(capacity > 0);
+        assert(tolerance > 0);
+        this.capacity = capacity;
+        this.tolerance = tolerance;
+        int perSegment = (capacity + SEGMENTS - 1) / SEGMENTS;
+        for (int i = 0; i < SEGMENTS; ++i)
+            segments[i] = new Segment(perSegment);
+    }
+
+    /**
+     * Look up the result for a configuration
+     * @param robot          the robot
+     * @param configuration  the configuration
+     * @return TRUE if it is collision-free, FALSE if not, and null if it is not cached
+     */
+    public Boolean get(Robot robot, double[] configuration) {
+        Key key = new Key(robot, configuration, tolerance);
+        Boolean result = segments[key.segment()].getValid(key);
+        count(result != null);
+        return result;
+    }
+
+    /**
+     * Store the result for a configuration
+     * @param robot          the robot
+     * @param configuration  the configuration
+     * @param valid          whether it is collision-free
+     */
+    @SuppressWarnings("boxing")
+    public void put(Robot robot, double[] configuration, boolean valid) {
+        Key key = new Key(robot, configuration, tolerance);
+        segments[key.segment()].update(key, entry -> entry.valid = valid);
+    }
+
+    /**
+     * Look up the clearance for a configuration
+     * @param robot          the robot
+     * @param configuration  the configuration
+     * @param limit          distances beyond the limit are not needed
+     * @return the clearance up to limit, as Environment.getClearance returns it, or NaN
+     *         if it is not cached for that limit
+     */
+    public double getClearance(Robot robot, double[] configuration, double limit) {
+        Key key = new Key(robot, configuration, tolerance);
+        double result = segments[key.segment()].getClearance(key, limit);
+        count(!Double.isNaN(result));
+        return result;
+    }
+
+    /**
+     * Store the clearance for a configuration
+     * @param robot          the robot
+     * @param configuration  the configuration
+     * @param limit          the limit the clearance was computed for
+     * @param clearance      the clearance up to limit
+     */
+    public void putClearance(Robot robot, double[] configuration, double limit, double clearance) {
+        Key key = new Key(robot, configuration, tolerance);
+        segments[key.segment()].update(key, entry -> {
+            entry.limit = limit;
+            entry.clearance = clearance;
+        });
+    }
+
+    /**
+     * Get the spacing of the quantization grid
+     * @return the tolerance
+     */
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * Get the maximum number of cached results
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Get the number of cached results
+     * @return the number of entries
+     */
+    public int size() {
+        int result = 0;
+        for (Segment segment : segments)
+            result += segment.size();
+        return result;
+    }
+
+    /**
+     * Get the number of lookups that found a result
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of lookups that found nothing
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Get the number of results evicted to stay within the capacity
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Get the fraction of lookups that found a result
+     * @return the hit rate, or 0 if there were no lookups
+     */
+    public double getHitRate() {
+        long h = getHits(), total = h + getMisses();
+        return total == 0 ? 0.0 : h / (double)total;
+    }
+
+    /**
+     * Remove all results and reset the statistics
+     */
+    public void clear() {
+        for (Segment segment : segments)
+            segment.clear();
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    @SuppressWarnings("boxing")
+    @Override
+    public String toString() {
+        return String.format("CollisionCache: %d/%d entries, hit rate %.3f (%d hits, %d misses, %d evictions)",
+                size(), capacity, getHitRate(), getHits(), getMisses(), getEvictions());
+    }
+
+    private void count(boolean hit) {
+        if (hit)
+            hits.increment();
+        else
+            misses.increment();
+    }
+
+    /**
+     * The results cached for a cell
+     */
+    private static final class Entry {
+        private Boolean valid;            // whether the robot is collision-free, or null if unknown
+        private double clearance = -1.0;  // the clearance up to limit, or -1 if unknown
+        private double limit = -1.0;
+    }
+
+    /**
+     * Robot and quantized configuration
+     */
+    private static final class Key {
+        private final Robot robot;
+        private final long[] cells;
+        private final int hash;
+
+        public Key(Robot robot, double[] configuration, double tolerance) {
+            this.robot = robot;
+            cells = new long[configuration.length];
+            for (int i = 0; i < cells.length; ++i)
+                cells[i] = (long)Math.floor(configuration[i] / tolerance);
+            int h = System.identityHashCode(robot) * 31 + Arrays.hashCode(cells);
+            hash = h ^ (h >>> 16);
+        }
+
+        public int segment() {
+            return (hash >>> 8) & (SEGMENTS - 1);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key)o;
+            return robot == other.robot && Arrays.equals(cells, other.cells);
+        }
+    }
+
+    /**
+     * A least-recently-used map guarded by its own lock
+     */
+    private final class Segment {
+        private final LinkedHashMap<Key, Entry> map;
+
+        public Segment(int segmentCapacity) {
+            map = new LinkedHashMap<Key, Entry>(2 * segmentCapacity, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                    if (size() <= segmentCapacity)
+                        return false;
+                    evictions.increment();
+                    return true;
+                }
+            };
+        }
+
+        @SuppressWarnings("boxing")
+        public synchronized Boolean getValid(Key key) {
+            Entry entry = map.get(key);
+            if (entry == null)
+                return null;
+            if (entry.valid == null && entry.clearance > 0)
+                return true;  // a robot clear of the obstacles does not collide
+            return entry.valid;
+        }
+
+        public synchronized double getClearance(Key key, double limit) {
+            Entry entry = map.get(key);
+            if (entry == null)
+                return Double.NaN;
+            if (Boolean.FALSE.equals(entry.valid))
+                return 0.0;  // a robot in collision has no clearance
+            if (entry.clearance >= 0 && (entry.clearance < entry.limit || limit <= entry.limit))
+                return Math.min(entry.clearance, limit);  // an exact bound, or one cut at a larger limit
+            return Double.NaN;
+        }
+
+        public synchronized void update(Key key, Consumer<Entry> change) {
+            change.accept(map.computeIfAbsent(key, k -> new Entry()));
+        }
+
+        public synchronized int size() {
+            return map.size();
+        }
+
+        public synchronized void clear() {
+            map.clear();
+        }
+    }
+}
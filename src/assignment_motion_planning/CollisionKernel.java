@@ -0,0 +1,456 @@
+package assignment_motion_planning;
+
+import java.awt.Shape;
+import java.awt.geom.FlatteningPathIterator;
+import java.awt.geom.PathIterator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collision checker that decomposes the obstacles and the shapes of a robot into convex
+ * polygons once, and answers queries with the separating axis test on primitive arrays.
+ * A bounding volume hierarchy over the obstacle pieces restricts the exact test to the
+ * pieces near each robot piece. A query allocates nothing once the robot has been
+ * compiled and the calling thread has checked a configuration before. Shapes are placed
+ * and tested in order, and each thread keeps the shapes it placed last, so that a
+ * configuration sharing a prefix of a kinematic chain with the previous one only
+ * recomputes the links after it.
+ */
+public class CollisionKernel {
+    private static final double FLATNESS = 1e-3;  // tolerance for flattening curved segments
+    private static final double EPSILON = 1e-12;
+    private final double[] obstacleVertices;  // (x, y) of each vertex of each convex piece, counter-clockwise
+    private final int[] obstacleOffsets;      // piece i owns vertices [offsets[i], offsets[i + 1])
+    private final BoundingVolumeHierarchy hierarchy;  // bounding boxes of the obstacle pieces
+    private final ConcurrentHashMap<Robot, RobotModel> models = new ConcurrentHashMap<>();
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * Constructor
+     * @param obstacles the obstacles
+     */
+    public CollisionKernel(List<Shape> obstacles) {
+        List<double[]> pieces = new ArrayList<>();
+        for (Shape s : obstacles)
+            pieces.addAll(decompose(s.getPathIterator(null)));
+        obstacleOffsets = new int[pieces.size() + 1];
+        for (int i = 0; i < pieces.size(); ++i)
+            obstacleOffsets[i + 1] = obstacleOffsets[i] + pieces.get(i).length / 2;
+        obstacleVertices = new double[2 * obstacleOffsets[pieces.size()]];
+        for (int i = 0; i < pieces.size(); ++i)
+            System.arraycopy(pieces.get(i), 0, obstacleVertices, 2 * obstacleOffsets[i], pieces.get(i).length);
+        double[] boxes = new double[4 * pieces.size()];
+        for (int i = 0; i < pieces.size(); ++i)
+            getBounds(obstacleVertices, obstacleOffsets[i], obstacleOffsets[i + 1], boxes, 4 * i);
+        hierarchy = new BoundingVolumeHierarchy(boxes);
+    }
+
+    /**
+     * Get the number of convex pieces the obstacles were decomposed into
+     * @return the number of pieces
+     */
+    public int getNumberOfPieces() {
+        return obstacleOffsets.length - 1;
+    }
+
+    /**
+     * Check whether a configuration is collision-free for a robot
+     * @param robot          the robot
+     * @param configuration  the configuration
+     * @return true if the configuration is collision-free, and false otherwise
+     */
+    public boolean isValidConfiguration(Robot robot, double[] configuration) {
+        assert(robot != null);
+        assert(configuration.length == robot.getDimension());
+        RobotModel model = models.computeIfAbsent(robot, RobotModel::new);
+        Scratch s = scratch.get();
+        s.begin(robot, model, hierarchy, configuration);
+        // place and test the shapes one at a time, so a collision of an early link of a
+        // chain is found before the later links are computed
+        for (int p = 0; p < model.getNumberOfPieces(); ++p) {
+            s.extend(robot, model, configuration, model.shapeOf[p] + 1);
+            int from = model.offsets[p], to = model.offsets[p + 1];
+            getBounds(s.vertices, from, to, s.box, 0);
+            int found = hierarchy.query(s.box[0], s.box[1], s.box[2], s.box[3], s.stack, s.candidates);
+            for (int i = 0; i < found; ++i) {
+                int o = s.candidates[i];
+                if (overlap(s.vertices, from, to, obstacleVertices, obstacleOffsets[o], obstacleOffsets[o + 1]))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compute the distance between a robot and the obstacles, up to a limit
+     * @param robot          the robot
+     * @param configuration  the configuration
+     * @param limit          distances beyond the limit are not needed
+     * @return the distance if it is less than limit, and limit otherwise; 0 if in collision
+     */
+    public double getClearance(Robot robot, double[] configuration, double limit) {
+        assert(robot != null);
+        assert(configuration.length == robot.getDimension());
+        RobotModel model = models.computeIfAbsent(robot, RobotModel::new);
+        Scratch s = scratch.get();
+        s.begin(robot, model, hierarchy, configuration);
+        s.extend(robot, model, configuration, model.numberOfShapes);
+        double best = limit;
+        for (int p = 0; p < model.getNumberOfPieces() && best > 0.0; ++p) {
+            int from = model.offsets[p], to = model.offsets[p + 1];
+            getBounds(s.vertices, from, to, s.box, 0);
+            int found = hierarchy.query(s.box[0] - best, s.box[1] - best, s.box[2] + best, s.box[3] + best,
+                    s.stack, s.candidates);
+            for (int i = 0; i < found && best > 0.0; ++i) {
+                int o = s.candidates[i];
+                best = Math.min(best, distance(s.vertices, from, to, obstacleVertices, obstacleOffsets[o], obstacleOffsets[o + 1]));
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Compute the distance between two convex polygons
+     * @return the distance, or 0 if they overlap
+     */
+    static double distance(double[] a, int aFrom, int aTo, double[] b, int bFrom, int bTo) {
+        if (overlap(a, aFrom, aTo, b, bFrom, bTo))
+            return 0.0;
+        return Math.min(vertexToEdges(a, aFrom, aTo, b, bFrom, bTo), vertexToEdges(b, bFrom, bTo, a, aFrom, aTo));
+    }
+
+    /**
+     * Compute the smallest distance from a vertex of polygon a to an edge of polygon b
+     */
+    private static double vertexToEdges(double[] a, int aFrom, int aTo, double[] b, int bFrom, int bTo) {
+        double best = Double.POSITIVE_INFINITY;
+        for (int j = bFrom; j < bTo; ++j) {
+            int k = j + 1 < bTo ? j + 1 : bFrom;
+            double x1 = b[2 * j], y1 = b[2 * j + 1];
+            double ex = b[2 * k] - x1, ey = b[2 * k + 1] - y1;
+            double length = ex * ex + ey * ey;
+            for (int i = aFrom; i < aTo; ++i) {
+                double px = a[2 * i] - x1, py = a[2 * i + 1] - y1;
+                double t = length > 0.0 ? Math.max(0.0, Math.min(1.0, (px * ex + py * ey) / length)) : 0.0;
+                double dx = px - t * ex, dy = py - t * ey;
+                best = Math.min(best, dx * dx + dy * dy);
+            }
+        }
+        return Math.sqrt(best);
+    }
+
+    /**
+     * Compute the bounding box of a polygon
+     * @param vertices  (x, y) pairs
+     * @param from      index of the first vertex
+     * @param to        index after the last vertex
+     * @param result    output, receives (minX, minY, maxX, maxY)
+     * @param offset    position in result
+     */
+    private static void getBounds(double[] vertices, int from, int to, double[] result, int offset) {
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int v = from; v < to; ++v) {
+            minX = Math.min(minX, vertices[2 * v]);
+            minY = Math.min(minY, vertices[2 * v + 1]);
+            maxX = Math.max(maxX, vertices[2 * v]);
+            maxY = Math.max(maxY, vertices[2 * v + 1]);
+        }
+        result[offset] = minX;
+        result[offset + 1] = minY;
+        result[offset + 2] = maxX;
+        result[offset + 3] = maxY;
+    }
+
+    /**
+     * Test whether two convex polygons overlap; touching polygons do not overlap
+     * @param a      vertices of the first polygon
+     * @param aFrom  index of the first vertex of the first polygon
+     * @param aTo    index after the last vertex of the first polygon
+     * @param b      vertices of the second polygon
+     * @param bFrom  index of the first vertex of the second polygon
+     * @param bTo    index after the last vertex of the second polygon
+     * @return true if the interiors intersect, and false otherwise
+     */
+    static boolean overlap(double[] a, int aFrom, int aTo, double[] b, int bFrom, int bTo) {
+        return !separates(a, aFrom, aTo, b, bFrom, bTo) && !separates(b, bFrom, bTo, a, aFrom, aTo);
+    }
+
+    /**
+     * Test whether an edge normal of polygon a is a separating axis
+     * @return true if some edge of a has all vertices of b on its outer side
+     */
+    private static boolean separates(double[] a, int aFrom, int aTo, double[] b, int bFrom, int bTo) {
+        for (int i = aFrom; i < aTo; ++i) {
+            int j = i + 1 < aTo ? i + 1 : aFrom;
+            double x = a[2 * i], y = a[2 * i + 1];
+            double nx = a[2 * j + 1] - y, ny = x - a[2 * j];  // outward normal for counter-clockwise order
+            boolean separating = true;
+            for (int k = bFrom; k < bTo && separating; ++k)
+                separating = nx * (b[2 * k] - x) + ny * (b[2 * k + 1] - y) >= 0.0;
+            if (separating)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Decompose a path into convex polygons
+     * @param iterator the path
+     * @return a list of counter-clockwise convex polygons, each as (x, y) pairs
+     */
+    static List<double[]> decompose(PathIterator iterator) {
+        List<double[]> result = new ArrayList<>();
+        PathIterator it = new FlatteningPathIterator(iterator, FLATNESS);
+        double[] coords = new double[6];
+        double[] ring = new double[16];
+        int n = 0;
+        while (!it.isDone()) {
+            int type = it.currentSegment(coords);
+            if (type == PathIterator.SEG_MOVETO || type == PathIterator.SEG_CLOSE) {
+                addConvexPieces(result, ring, n);
+                n = 0;
+            }
+            if (type != PathIterator.SEG_CLOSE) {
+                if (2 * n + 2 > ring.length)
+                    ring = Arrays.copyOf(ring, ring.length * 2);
+                ring[2 * n] = coords[0];
+                ring[2 * n + 1] = coords[1];
+                ++n;
+            }
+            it.next();
+        }
+        addConvexPieces(result, ring, n);
+        return result;
+    }
+
+    /**
+     * Split a simple polygon into convex pieces; convex polygons are kept whole and
+     * the others are triangulated by ear clipping
+     * @param result  output list
+     * @param ring    vertices as (x, y) pairs
+     * @param n       number of vertices
+     */
+    private static void addConvexPieces(List<double[]> result, double[] ring, int n) {
+        double[] xs = new double[n], ys = new double[n];
+        int m = 0;
+        for (int i = 0; i < n; ++i) {
+            double x = ring[2 * i], y = ring[2 * i + 1];
+            if (m > 0 && x == xs[m - 1] && y == ys[m - 1])
+                continue;
+            xs[m] = x;
+            ys[m] = y;
+            ++m;
+        }
+        while (m > 1 && xs[0] == xs[m - 1] && ys[0] == ys[m - 1])
+            --m;
+        if (m < 3)
+            return;
+        double area = 0.0;
+        for (int i = 0; i < m; ++i) {
+            int j = (i + 1) % m;
+            area += xs[i] * ys[j] - xs[j] * ys[i];
+        }
+        if (Math.abs(area) < EPSILON)
+            return;
+        int[] index = new int[m];
+        for (int i = 0; i < m; ++i)
+            index[i] = area > 0 ? i : m - 1 - i;
+        boolean convex = true;
+        for (int i = 0; i < m && convex; ++i)
+            convex = cross(xs, ys, index[(i + m - 1) % m], index[i], index[(i + 1) % m]) >= -EPSILON;
+        if (convex) {
+            result.add(pack(xs, ys, index, m));
+            return;
+        }
+        int count = m, i = 0, misses = 0;
+        while (count > 3) {
+            int prev = index[(i + count - 1) % count], current = index[i], next = index[(i + 1) % count];
+            if (misses > count || isEar(xs, ys, index, count, prev, current, next)) {
+                result.add(pack(xs, ys, new int[] { prev, current, next }, 3));
+                System.arraycopy(index, i + 1, index, i, count - i - 1);
+                --count;
+                i %= count;
+                misses = 0;
+            } else {
+                i = (i + 1) % count;
+                ++misses;
+            }
+        }
+        if (Math.abs(cross(xs, ys, index[0], index[1], index[2])) > EPSILON)
+            result.add(pack(xs, ys, index, 3));
+    }
+
+    /**
+     * Test whether vertex current is an ear of the remaining polygon
+     */
+    private static boolean isEar(double[] xs, double[] ys, int[] index, int count, int prev, int current, int next) {
+        if (cross(xs, ys, prev, current, next) <= EPSILON)
+            return false;
+        for (int k = 0; k < count; ++k) {
+            int v = index[k];
+            if (v == prev || v == current || v == next)
+                continue;
+            if (cross(xs, ys, prev, current, v) >= 0 && cross(xs, ys, current, next, v) >= 0
+                    && cross(xs, ys, next, prev, v) >= 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Cross product of (b - a) and (c - b)
+     */
+    private static double cross(double[] xs, double[] ys, int a, int b, int c) {
+        return (xs[b] - xs[a]) * (ys[c] - ys[b]) - (ys[b] - ys[a]) * (xs[c] - xs[b]);
+    }
+
+    /**
+     * Pack selected vertices into (x, y) pairs
+     */
+    private static double[] pack(double[] xs, double[] ys, int[] index, int count) {
+        double[] result = new double[2 * count];
+        for (int i = 0; i < count; ++i) {
+            result[2 * i] = xs[index[i]];
+            result[2 * i + 1] = ys[index[i]];
+        }
+        return result;
+    }
+
+    /**
+     * Convex pieces of the shapes of a robot in their local frames
+     */
+    private static final class RobotModel {
+        private final double[] vertices;  // local (x, y) of each vertex of each piece
+        private final int[] offsets;      // piece i owns vertices [offsets[i], offsets[i + 1])
+        private final int[] shapeOf;      // the shape each piece belongs to
+        private final int[] firstPiece;   // shape i owns pieces [firstPiece[i], firstPiece[i + 1])
+        private final int numberOfShapes;
+
+        /**
+         * Compile the shapes of a robot
+         * @param robot the robot
+         */
+        public RobotModel(Robot robot) {
+            List<double[]> pieces = new ArrayList<>();
+            List<Integer> owners = new ArrayList<>();
+            List<PathIterator> shapes = robot.getShape();
+            numberOfShapes = shapes.size();
+            for (int i = 0; i < numberOfShapes; ++i) {
+                for (double[] piece : decompose(shapes.get(i))) {
+                    pieces.add(piece);
+                    owners.add(i);
+                }
+            }
+            offsets = new int[pieces.size() + 1];
+            shapeOf = new int[pieces.size()];
+            for (int i = 0; i < pieces.size(); ++i) {
+                offsets[i + 1] = offsets[i] + pieces.get(i).length / 2;
+                shapeOf[i] = owners.get(i);
+            }
+            firstPiece = new int[numberOfShapes + 1];
+            for (int i = 0, p = 0; i <= numberOfShapes; ++i) {
+                while (p < shapeOf.length && shapeOf[p] < i)
+                    ++p;
+                firstPiece[i] = p;
+            }
+            vertices = new double[2 * offsets[pieces.size()]];
+            for (int i = 0; i < pieces.size(); ++i)
+                System.arraycopy(pieces.get(i), 0, vertices, 2 * offsets[i], pieces.get(i).length);
+        }
+
+        /**
+         * Get the number of convex pieces
+         * @return the number of pieces
+         */
+        public int getNumberOfPieces() {
+            return shapeOf.length;
+        }
+
+        /**
+         * Transform the pieces of some shapes into the global frame
+         * @param transforms  (x, y, theta) for each shape
+         * @param result      output vertices, laid out like the local ones
+         * @param from        first shape
+         * @param to          shape after the last
+         */
+        public void place(double[] transforms, double[] result, int from, int to) {
+            for (int shape = from; shape < to; ++shape) {
+                double x = transforms[3 * shape], y = transforms[3 * shape + 1];
+                double sin = Math.sin(transforms[3 * shape + 2]), cos = Math.cos(transforms[3 * shape + 2]);
+                for (int v = offsets[firstPiece[shape]]; v < offsets[firstPiece[shape + 1]]; ++v) {
+                    double lx = vertices[2 * v], ly = vertices[2 * v + 1];
+                    result[2 * v] = cos * lx - sin * ly + x;
+                    result[2 * v + 1] = sin * lx + cos * ly + y;
+                }
+            }
+        }
+    }
+
+    /**
+     * Per-thread buffers reused across queries
+     */
+    private static final class Scratch {
+        private double[] transforms = new double[0];
+        private double[] vertices = new double[0];
+        private final double[] box = new double[4];
+        private int[] stack = new int[0];
+        private int[] candidates = new int[0];
+        private Robot robot;                          // the robot placed last
+        private double[] configuration = new double[0];  // the configuration placed last
+        private int placed = 0;                       // number of shapes placed for it
+
+        /**
+         * Start a query, keeping the shapes of the previous query that the new
+         * configuration shares
+         * @param r          the robot
+         * @param model      the compiled robot
+         * @param hierarchy  the bounding volume hierarchy of the obstacles
+         * @param q          the configuration
+         */
+        public void begin(Robot r, RobotModel model, BoundingVolumeHierarchy hierarchy, double[] q) {
+            ensureCapacity(model, hierarchy);
+            if (r != robot || configuration.length != q.length) {
+                robot = r;
+                configuration = new double[q.length];
+                placed = 0;
+            }
+            placed = Math.min(placed, r.getSharedShapes(configuration, q));
+            System.arraycopy(q, 0, configuration, 0, q.length);
+        }
+
+        /**
+         * Make sure the first shapes are placed
+         * @param r      the robot
+         * @param model  the compiled robot
+         * @param q      the configuration
+         * @param count  the number of shapes needed
+         */
+        public void extend(Robot r, RobotModel model, double[] q, int count) {
+            if (count <= placed)
+                return;
+            r.getTransformation(q, transforms, placed, count);
+            model.place(transforms, vertices, placed, count);
+            placed = count;
+        }
+
+        /**
+         * Make sure the buffers are large enough for a robot and the obstacles
+         * @param model      the compiled robot
+         * @param hierarchy  the bounding volume hierarchy of the obstacles
+         */
+        public void ensureCapacity(RobotModel model, BoundingVolumeHierarchy hierarchy) {
+            if (transforms.length < 3 * model.numberOfShapes || vertices.length < model.vertices.length) {
+                transforms = new double[Math.max(transforms.length, 3 * model.numberOfShapes)];
+                vertices = new double[Math.max(vertices.length, model.vertices.length)];
+                placed = 0;
+            }
+            if (stack.length < hierarchy.getStackSize())
+                stack = new int[hierarchy.getStackSize()];
+            if (candidates.length < hierarchy.size())
+                candidates = new int[hierarchy.size()];
+        }
+    }
+}
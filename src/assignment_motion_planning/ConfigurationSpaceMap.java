@@ -0,0 +1,368 @@
+package assignment_motion_planning;
+
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Configuration-space obstacles of a planar robot, precomputed for a number of evenly
+ * spaced headings. Slice k covers the headings within half a slice of 2*pi*k/N. Its
+ * obstacles are the Minkowski sums of the obstacle pieces with the reflected robot
+ * pieces rotated to 2*pi*k/N, rasterized into a distance field. A cell of a slice is
+ * FREE if every configuration with its position in the cell and its heading in the slice
+ * is collision-free, COLLIDING if every such configuration collides, and UNKNOWN otherwise.
+ * Maps can be saved to a file and loaded back.
+ */
+public class ConfigurationSpaceMap {
+    private static final int MAGIC = 0x43534d31;  // "CSM1"
+    private final int slices;
+    private final double cellSize;
+    private final double minX;
+    private final double minY;
+    private final int width;
+    private final int height;
+    private final byte[][] cells;  // classification of each cell of each slice
+
+    /**
+     * Build the map
+     * @param obstacles  counter-clockwise convex pieces of the obstacles, each as (x, y) pairs
+     * @param robot      the robot
+     * @param bounds     region of the workspace covered by the obstacles
+     * @param slices     number of headings
+     * @param cellSize   side length of a cell
+     */
+    public ConfigurationSpaceMap(List<double[]> obstacles, PlanarRobot robot, Rectangle2D bounds, int slices, double cellSize) {
+        assert(slices > 0);
+        assert(cellSize > 0);
+        this.slices = slices;
+        this.cellSize = cellSize;
+        // the reference point can be up to the circumscribed radius away from an obstacle it touches
+        double margin = robot.getCircumscribedRadius() + cellSize;
+        Rectangle2D grid = new Rectangle2D.Double(bounds.getMinX() - margin, bounds.getMinY() - margin,
+                bounds.getWidth() + 2.0 * margin, bounds.getHeight() + 2.0 * margin);
+        minX = grid.getMinX();
+        minY = grid.getMinY();
+        width = Math.max(1, (int)Math.ceil(grid.getWidth() / cellSize));
+        height = Math.max(1, (int)Math.ceil(grid.getHeight() / cellSize));
+        List<double[]> pieces = new ArrayList<>();
+        for (PathIterator shape : robot.getShape())
+            pieces.addAll(CollisionKernel.decompose(shape));
+        double[] boxes = new double[4 * obstacles.size()];
+        for (int i = 0; i < obstacles.size(); ++i) {
+            double[] piece = obstacles.get(i);
+            boxes[4 * i] = boxes[4 * i + 1] = Double.POSITIVE_INFINITY;
+            boxes[4 * i + 2] = boxes[4 * i + 3] = Double.NEGATIVE_INFINITY;
+            for (int v = 0; v < piece.length; v += 2) {
+                boxes[4 * i] = Math.min(boxes[4 * i], piece[v]);
+                boxes[4 * i + 1] = Math.min(boxes[4 * i + 1], piece[v + 1]);
+                boxes[4 * i + 2] = Math.max(boxes[4 * i + 2], piece[v]);
+                boxes[4 * i + 3] = Math.max(boxes[4 * i + 3], piece[v + 1]);
+            }
+        }
+        BoundingVolumeHierarchy hierarchy = new BoundingVolumeHierarchy(boxes);
+        cells = new byte[slices][];
+        IntStream.range(0, slices).parallel().forEach(k ->
+            cells[k] = buildSlice(k, obstacles, pieces, robot.getCircumscribedRadius(), grid, hierarchy));
+    }
+
+    private ConfigurationSpaceMap(int slices, double cellSize, double minX, double minY, int width, int height, byte[][] cells) {
+        this.slices = slices;
+        this.cellSize = cellSize;
+        this.minX = minX;
+        this.minY = minY;
+        this.width = width;
+        this.height = height;
+        this.cells = cells;
+    }
+
+    /**
+     * Classify the cells of one slice
+     * @param k          the slice
+     * @param obstacles  convex pieces of the obstacles
+     * @param pieces     convex pieces of the robot in its local frame
+     * @param radius     circumscribed radius of the robot
+     * @param grid       region covered by the grid
+     * @param hierarchy  bounding volume hierarchy of the obstacle pieces
+     * @return the classification of each cell
+     */
+    private byte[] buildSlice(int k, List<double[]> obstacles, List<double[]> pieces, double radius,
+            Rectangle2D grid, BoundingVolumeHierarchy hierarchy) {
+        double theta = getHeading(k), halfSlice = Math.PI / slices;
+        double sin = Math.sin(theta), cos = Math.cos(theta);
+        List<double[]> sums = new ArrayList<>();
+        for (double[] obstacle : obstacles)
+            for (double[] piece : pieces)
+                sums.add(minkowskiDifference(obstacle, piece, sin, cos));
+        DistanceField field = new DistanceField(sums, grid, cellSize);
+        // an interior point of each robot piece, in the frame of the slice's heading
+        double[] centroids = new double[2 * pieces.size()];
+        double[] slack = new double[pieces.size()];
+        double halfDiagonal = cellSize * Math.sqrt(0.5);
+        for (int p = 0; p < pieces.size(); ++p) {
+            double[] piece = pieces.get(p);
+            double cx = 0.0, cy = 0.0;
+            for (int v = 0; v < piece.length; v += 2) {
+                cx += piece[v];
+                cy += piece[v + 1];
+            }
+            cx /= piece.length / 2;
+            cy /= piece.length / 2;
+            centroids[2 * p] = cos * cx - sin * cy;
+            centroids[2 * p + 1] = sin * cx + cos * cy;
+            // how far the centroid can be from where it is at the centre of a cell at the slice's heading
+            slack[p] = Math.hypot(cx, cy) * halfSlice + halfDiagonal;
+        }
+        int[] stack = new int[hierarchy.getStackSize()], candidates = new int[hierarchy.size()];
+        byte[] result = new byte[width * height];
+        for (int j = 0; j < height; ++j) {
+            for (int i = 0; i < width; ++i) {
+                double x = minX + (i + 0.5) * cellSize, y = minY + (j + 0.5) * cellSize;
+                // turning by up to half a slice moves every point of the robot by at most radius * halfSlice
+                if (field.getClearance(x, y) > radius * halfSlice)
+                    result[j * width + i] = DistanceField.FREE;
+                else if (isBuried(x, y, centroids, slack, obstacles, hierarchy, stack, candidates))
+                    result[j * width + i] = DistanceField.COLLIDING;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Test whether the disk around some robot centroid placed at (x, y) lies inside an
+     * obstacle piece, so that the robot collides wherever it is in the cell and whatever
+     * its heading in the slice
+     */
+    private static boolean isBuried(double x, double y, double[] centroids, double[] slack, List<double[]> obstacles,
+            BoundingVolumeHierarchy hierarchy, int[] stack, int[] candidates) {
+        for (int p = 0; p < slack.length; ++p) {
+            double px = x + centroids[2 * p], py = y + centroids[2 * p + 1], r = slack[p];
+            int found = hierarchy.query(px - r, py - r, px + r, py + r, stack, candidates);
+            for (int c = 0; c < found; ++c)
+                if (getDepth(obstacles.get(candidates[c]), px, py) >= r)
+                    return true;
+        }
+        return false;
+    }
+
+    /**
+     * Compute how deep a point lies inside a counter-clockwise convex polygon
+     * @return the distance to the nearest edge line, negative if the point is outside
+     */
+    private static double getDepth(double[] piece, double x, double y) {
+        double result = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < piece.length; i += 2) {
+            int j = (i + 2) % piece.length;
+            double ex = piece[j] - piece[i], ey = piece[j + 1] - piece[i + 1];
+            result = Math.min(result, (ex * (y - piece[i + 1]) - ey * (x - piece[i])) / Math.hypot(ex, ey));
+        }
+        return result;
+    }
+
+    /**
+     * Compute the positions of the reference point at which a rotated robot piece
+     * overlaps an obstacle piece, that is the obstacle minus the rotated robot piece
+     * @param obstacle  convex obstacle piece
+     * @param piece     convex robot piece in its local frame
+     * @param sin       sine of the heading
+     * @param cos       cosine of the heading
+     * @return the convex hull of all differences of vertices, counter-clockwise
+     */
+    static double[] minkowskiDifference(double[] obstacle, double[] piece, double sin, double cos) {
+        int n = obstacle.length / 2, m = piece.length / 2;
+        double[] points = new double[2 * n * m];
+        for (int i = 0; i < n; ++i) {
+            for (int j = 0; j < m; ++j) {
+                double bx = piece[2 * j], by = piece[2 * j + 1];
+                points[2 * (i * m + j)] = obstacle[2 * i] - (cos * bx - sin * by);
+                points[2 * (i * m + j) + 1] = obstacle[2 * i + 1] - (sin * bx + cos * by);
+            }
+        }
+        return convexHull(points);
+    }
+
+    /**
+     * Compute the convex hull of points by the monotone chain algorithm
+     * @param points (x, y) pairs
+     * @return the vertices of the hull, counter-clockwise and without collinear ones
+     */
+    static double[] convexHull(double[] points) {
+        int n = points.length / 2;
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; ++i)
+            order[i] = i;
+        Arrays.sort(order, (a, b) -> points[2 * a] != points[2 * b]
+                ? Double.compare(points[2 * a], points[2 * b]) : Double.compare(points[2 * a + 1], points[2 * b + 1]));
+        int[] hull = new int[2 * n];
+        int k = 0;
+        for (int pass = 0; pass < 2; ++pass) {
+            int floor = k;
+            for (int t = 0; t < n; ++t) {
+                int i = order[pass == 0 ? t : n - 1 - t];
+                while (k >= floor + 2 && turn(points, hull[k - 2], hull[k - 1], i) <= 0.0)
+                    --k;
+                hull[k++] = i;
+            }
+            --k;  // the last point of each chain starts the other
+        }
+        double[] result = new double[2 * Math.max(k, 0)];
+        for (int i = 0; i < k; ++i) {
+            result[2 * i] = points[2 * hull[i]];
+            result[2 * i + 1] = points[2 * hull[i] + 1];
+        }
+        return result;
+    }
+
+    /**
+     * Cross product of (b - a) and (c - a)
+     */
+    private static double turn(double[] points, int a, int b, int c) {
+        double ax = points[2 * a], ay = points[2 * a + 1];
+        return (points[2 * b] - ax) * (points[2 * c + 1] - ay) - (points[2 * b + 1] - ay) * (points[2 * c] - ax);
+    }
+
+    /**
+     * Get the heading at the middle of a slice
+     * @param k the slice
+     * @return the heading
+     */
+    public double getHeading(int k) {
+        return 2.0 * Math.PI * k / slices;
+    }
+
+    /**
+     * Get the number of slices
+     * @return the number of headings
+     */
+    public int getNumberOfSlices() {
+        return slices;
+    }
+
+    /**
+     * Get the side length of a cell
+     * @return the cell size
+     */
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * Classify a configuration
+     * @param x      x-coordinate of the reference point
+     * @param y      y-coordinate of the reference point
+     * @param theta  heading
+     * @return FREE, COLLIDING or UNKNOWN, as defined in DistanceField
+     */
+    public int classify(double x, double y, double theta) {
+        int i = (int)Math.floor((x - minX) / cellSize);
+        int j = (int)Math.floor((y - minY) / cellSize);
+        if (i < 0 || j < 0 || i >= width || j >= height)
+            return DistanceField.UNKNOWN;
+        int k = (int)Math.floorMod(Math.round(theta * slices / (2.0 * Math.PI)), (long)slices);
+        return cells[k][j * width + i];
+    }
+
+    /**
+     * Get the fraction of cells, over all slices, that are not UNKNOWN
+     * @return the fraction of cells decided by the map
+     */
+    public double getCoverage() {
+        long decided = 0;
+        for (byte[] slice : cells)
+            for (byte cell : slice)
+                if (cell != DistanceField.UNKNOWN)
+                    ++decided;
+        return decided / ((double)slices * width * height);
+    }
+
+    /**
+     * Compute a digest of everything a map depends on, to name the file it is saved in
+     * @param obstacles  convex pieces of the obstacles
+     * @param robot      the robot
+     * @param slices     number of headings
+     * @param cellSize   side length of a cell
+     * @return the digest as a hexadecimal string
+     */
+    public static String digest(List<double[]> obstacles, PlanarRobot robot, int slices, double cellSize) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+            List<double[]> all = new ArrayList<>(obstacles);
+            all.add(new double[] { Double.NaN });  // separates the obstacles from the robot
+            for (PathIterator shape : robot.getShape())
+                all.addAll(CollisionKernel.decompose(shape));
+            all.add(new double[] { slices, cellSize, robot.getCircumscribedRadius() });
+            for (double[] values : all) {
+                buffer.clear();
+                md.update(buffer.putLong(values.length).array());
+                for (double value : values) {
+                    buffer.clear();
+                    md.update(buffer.putDouble(value).array());
+                }
+            }
+            StringBuilder result = new StringBuilder();
+            for (byte b : md.digest())
+                result.append(String.format("%02x", Byte.valueOf(b)));
+            return result.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Save the map
+     * @param file the file
+     * @throws IOException
+     */
+    public void save(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(file))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(slices);
+            out.writeDouble(cellSize);
+            out.writeDouble(minX);
+            out.writeDouble(minY);
+            out.writeInt(width);
+            out.writeInt(height);
+            for (byte[] slice : cells)
+                out.write(slice);
+        }
+    }
+
+    /**
+     * Load a map saved by save
+     * @param file the file
+     * @return the map
+     * @throws IOException if the file cannot be read or is not a map
+     */
+    public static ConfigurationSpaceMap load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != MAGIC)
+                throw new IOException("Not a configuration space map: " + file);
+            int slices = in.readInt();
+            double cellSize = in.readDouble(), minX = in.readDouble(), minY = in.readDouble();
+            int width = in.readInt(), height = in.readInt();
+            if (slices <= 0 || width <= 0 || height <= 0)
+                throw new IOException("Corrupt configuration space map: " + file);
+            byte[][] cells = new byte[slices][width * height];
+            for (byte[] slice : cells)
+                in.readFully(slice);
+            return new ConfigurationSpaceMap(slices, cellSize, minX, minY, width, height, cells);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package assignment_motion_planning;
+
+import java.util.Arrays;
+
+/**
+ * Configurations stored one after another in a single array of coordinates and addressed
+ * by int ids in the order they were added, so planners keep ints instead of vectors.
+ * The id of a configuration is found through an open addressing table that hashes the
+ * coordinates in place; two configurations are the same when Vector.equals says so.
+ */
+public class ConfigurationStore {
+    private final int dimension;
+    private double[] coordinates;
+    private int size = 0;
+    private int[] table = new int[32];  // 1 + id of the configuration in each slot, or 0 if the slot is empty
+
+    /**
+     * Constructor
+     * @param dimension the dimension of the configurations
+     */
+    public ConfigurationStore(int dimension) {
+        assert(dimension > 0);
+        this.dimension = dimension;
+        coordinates = new double[dimension * 16];
+    }
+
+    /**
+     * Get the dimension of the configurations
+     * @return the dimension
+     */
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * Get the number of configurations
+     * @return the number of configurations
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Add a configuration that is not stored yet
+     * @param configuration the configuration
+     * @return its id
+     */
+    public int add(Vector configuration) {
+        assert(configuration.getDimension() == dimension);
+        assert(find(configuration) < 0);
+        if (dimension * (size + 1) > coordinates.length)
+            coordinates = Arrays.copyOf(coordinates, 2 * coordinates.length);
+        int id = size++;
+        System.arraycopy(configuration.values(), 0, coordinates, dimension * id, dimension);
+        // keep the table at most half full
+        if (2 * size > table.length)
+            rehash(2 * table.length);
+        else
+            insert(id);
+        return id;
+    }
+
+    /**
+     * Find the id of a configuration
+     * @param configuration the configuration
+     * @return its id, or -1 if it is not stored
+     */
+    public int find(Vector configuration) {
+        assert(configuration.getDimension() == dimension);
+        double[] q = configuration.values();
+        int mask = table.length - 1;
+        for (int slot = hash(q, 0) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int id = table[slot] - 1;
+            if (equals(q, id))
+                return id;
+        }
+        return -1;
+    }
+
+    /**
+     * Materialize a configuration
+     * @param id the id
+     * @return the configuration
+     */
+    public Vector get(int id) {
+        assert(id >= 0 && id < size);
+        return new Vector(Arrays.copyOfRange(coordinates, dimension * id, dimension * (id + 1)));
+    }
+
+    /**
+     * Get one coordinate of a configuration
+     * @param id     the id
+     * @param index  the index of the coordinate
+     * @return the coordinate
+     */
+    public double get(int id, int index) {
+        assert(id >= 0 && id < size);
+        return coordinates[dimension * id + index];
+    }
+
+    /**
+     * Get the coordinates without copying them; configuration id starts at index
+     * getDimension() * id. Callers must not modify the array, which is replaced as the
+     * store grows.
+     * @return the backing array
+     */
+    double[] values() {
+        return coordinates;
+    }
+
+    /**
+     * Compute a robot's metric between two stored configurations
+     * @param robot  the robot
+     * @param id1    the id of the first configuration
+     * @param id2    the id of the second configuration
+     * @return the metric
+     */
+    public double getMetric(Robot robot, int id1, int id2) {
+        return robot.getMetric(coordinates, dimension * id1, coordinates, dimension * id2);
+    }
+
+    /**
+     * Compute a robot's metric between a stored configuration and another one
+     * @param robot  the robot
+     * @param id     the id of the stored configuration
+     * @param q      the other configuration
+     * @return the metric
+     */
+    public double getMetric(Robot robot, int id, Vector q) {
+        return robot.getMetric(coordinates, dimension * id, q.values(), 0);
+    }
+
+    /**
+     * Remove all configurations
+     */
+    public void clear() {
+        size = 0;
+        Arrays.fill(table, 0);
+    }
+
+    /**
+     * Hash the coordinates of a configuration like Arrays.hashCode, mixing the bits so
+     * that nearby slots are not filled by similar configurations
+     */
+    private int hash(double[] q, int offset) {
+        int h = 1;
+        for (int i = 0; i < dimension; ++i) {
+            long bits = Double.doubleToLongBits(q[offset + i]);
+            h = 31 * h + (int)(bits ^ (bits >>> 32));
+        }
+        h *= 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Compare a configuration with a stored one bit by bit, as Arrays.equals does
+     */
+    private boolean equals(double[] q, int id) {
+        for (int i = 0, c = dimension * id; i < dimension; ++i, ++c)
+            if (Double.doubleToLongBits(q[i]) != Double.doubleToLongBits(coordinates[c]))
+                return false;
+        return true;
+    }
+
+    /**
+     * Put a stored configuration into the first empty slot after its hash
+     */
+    private void insert(int id) {
+        int mask = table.length - 1;
+        int slot = hash(coordinates, dimension * id) & mask;
+        while (table[slot] != 0)
+            slot = (slot + 1) & mask;
+        table[slot] = id + 1;
+    }
+
+    /**
+     * Rebuild the table with a new capacity
+     */
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        for (int id = 0; id < size; ++id)
+            insert(id);
+    }
+}
@@ -0,0 +1,254 @@
+package assignment_motion_planning;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Occupancy grid and Euclidean signed distance field of the workspace, sampled at the
+ * centres of square cells. A cell is occupied if its square overlaps an obstacle, and
+ * solid if its centre lies inside one. The signed distance is the distance to the nearest
+ * occupied centre outside the obstacles, minus the distance to the nearest non-solid
+ * centre inside them, and zero in between. The field also keeps the distance to the
+ * nearest solid centre, so that distances to the obstacles can be bounded from both sides.
+ */
+public class DistanceField {
+    public static final int FREE = 1;       // certainly collision-free
+    public static final int COLLIDING = -1; // certainly in collision
+    public static final int UNKNOWN = 0;    // needs an exact test
+    private final double cellSize;
+    private final double minX;
+    private final double minY;
+    private final int width;
+    private final int height;
+    private final boolean[] occupied;
+    private final float[] signedDistance;
+    private final float[] contactDistance;  // distance to the nearest solid centre
+    private final double halfDiagonal;
+
+    /**
+     * Rasterize the obstacles described by convex pieces
+     * @param pieces    counter-clockwise convex pieces of the obstacles, each as (x, y) pairs
+     * @param bounds    region covered by the grid
+     * @param cellSize  side length of a cell
+     */
+    public DistanceField(List<double[]> pieces, Rectangle2D bounds, double cellSize) {
+        assert(cellSize > 0);
+        this.cellSize = cellSize;
+        this.halfDiagonal = cellSize * Math.sqrt(0.5);
+        minX = bounds.getMinX();
+        minY = bounds.getMinY();
+        width = Math.max(1, (int)Math.ceil(bounds.getWidth() / cellSize));
+        height = Math.max(1, (int)Math.ceil(bounds.getHeight() / cellSize));
+        occupied = new boolean[width * height];
+        boolean[] solid = new boolean[width * height];
+        double[] square = new double[8];
+        for (double[] piece : pieces) {
+            double pMinX = Double.POSITIVE_INFINITY, pMinY = Double.POSITIVE_INFINITY;
+            double pMaxX = Double.NEGATIVE_INFINITY, pMaxY = Double.NEGATIVE_INFINITY;
+            for (int v = 0; v < piece.length; v += 2) {
+                pMinX = Math.min(pMinX, piece[v]);
+                pMaxX = Math.max(pMaxX, piece[v]);
+                pMinY = Math.min(pMinY, piece[v + 1]);
+                pMaxY = Math.max(pMaxY, piece[v + 1]);
+            }
+            int fromI = Math.max(0, (int)Math.floor((pMinX - minX) / cellSize));
+            int toI = Math.min(width - 1, (int)Math.floor((pMaxX - minX) / cellSize));
+            int fromJ = Math.max(0, (int)Math.floor((pMinY - minY) / cellSize));
+            int toJ = Math.min(height - 1, (int)Math.floor((pMaxY - minY) / cellSize));
+            for (int j = fromJ; j <= toJ; ++j) {
+                for (int i = fromI; i <= toI; ++i) {
+                    double x = minX + i * cellSize, y = minY + j * cellSize;
+                    square[0] = x;
+                    square[1] = y;
+                    square[2] = x + cellSize;
+                    square[3] = y;
+                    square[4] = x + cellSize;
+                    square[5] = y + cellSize;
+                    square[6] = x;
+                    square[7] = y + cellSize;
+                    int cell = j * width + i;
+                    if (!occupied[cell] && CollisionKernel.overlap(square, 0, 4, piece, 0, piece.length / 2))
+                        occupied[cell] = true;
+                    if (!solid[cell] && contains(piece, x + 0.5 * cellSize, y + 0.5 * cellSize))
+                        solid[cell] = true;
+                }
+            }
+        }
+        float[] outside = distanceTo(occupied, true);
+        float[] inside = distanceTo(solid, false);
+        contactDistance = distanceTo(solid, true);
+        signedDistance = new float[width * height];
+        for (int cell = 0; cell < signedDistance.length; ++cell)
+            signedDistance[cell] = solid[cell] ? -inside[cell] : outside[cell];
+    }
+
+    /**
+     * Test whether a point lies strictly inside a counter-clockwise convex polygon
+     */
+    private static boolean contains(double[] piece, double x, double y) {
+        int n = piece.length / 2;
+        for (int i = 0; i < n; ++i) {
+            int j = (i + 1) % n;
+            double ex = piece[2 * j] - piece[2 * i], ey = piece[2 * j + 1] - piece[2 * i + 1];
+            if (ex * (y - piece[2 * i + 1]) - ey * (x - piece[2 * i]) <= 0.0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Compute, for every cell centre, the distance to the nearest centre of a cell whose
+     * flag equals value
+     * @param flags  flags of the cells
+     * @param value  the flag of the target cells
+     * @return the distances, or infinity if there is no target cell
+     */
+    private float[] distanceTo(boolean[] flags, boolean value) {
+        double[] squared = new double[width * height];
+        for (int cell = 0; cell < squared.length; ++cell)
+            squared[cell] = flags[cell] == value ? 0.0 : Double.POSITIVE_INFINITY;
+        int n = Math.max(width, height);
+        double[] f = new double[n], d = new double[n], z = new double[n + 1];
+        int[] v = new int[n];
+        for (int j = 0; j < height; ++j) {
+            for (int i = 0; i < width; ++i)
+                f[i] = squared[j * width + i];
+            transform(f, width, d, v, z);
+            for (int i = 0; i < width; ++i)
+                squared[j * width + i] = d[i];
+        }
+        for (int i = 0; i < width; ++i) {
+            for (int j = 0; j < height; ++j)
+                f[j] = squared[j * width + i];
+            transform(f, height, d, v, z);
+            for (int j = 0; j < height; ++j)
+                squared[j * width + i] = d[j];
+        }
+        float[] result = new float[squared.length];
+        for (int cell = 0; cell < result.length; ++cell)
+            result[cell] = (float)(Math.sqrt(squared[cell]) * cellSize);
+        return result;
+    }
+
+    /**
+     * One-dimensional squared Euclidean distance transform by the lower envelope of parabolas.
+     * The following paper describes the algorithm.
+     * Pedro F. Felzenszwalb and Daniel P. Huttenlocher,
+     * Distance Transforms of Sampled Functions,
+     * Theory of Computing, vol. 8, pp. 415-428, 2012.
+     * http://dx.doi.org/10.4086/toc.2012.v008a019
+     * @param f  input samples, infinity for non-sites
+     * @param n  number of samples
+     * @param d  output squared distances
+     * @param v  buffer for the locations of the parabolas
+     * @param z  buffer for the boundaries between parabolas
+     */
+    private static void transform(double[] f, int n, double[] d, int[] v, double[] z) {
+        int k = -1;
+        for (int q = 0; q < n; ++q) {
+            if (f[q] == Double.POSITIVE_INFINITY)
+                continue;
+            double s = Double.NEGATIVE_INFINITY;
+            while (k >= 0) {
+                s = ((f[q] + q * (double)q) - (f[v[k]] + v[k] * (double)v[k])) / (2.0 * (q - v[k]));
+                if (s > z[k])
+                    break;
+                --k;
+            }
+            ++k;
+            v[k] = q;
+            z[k] = k == 0 ? Double.NEGATIVE_INFINITY : s;
+            z[k + 1] = Double.POSITIVE_INFINITY;
+        }
+        if (k < 0) {
+            Arrays.fill(d, 0, n, Double.POSITIVE_INFINITY);
+            return;
+        }
+        int p = 0;
+        for (int q = 0; q < n; ++q) {
+            while (z[p + 1] < q)
+                ++p;
+            double diff = q - v[p];
+            d[q] = diff * diff + f[v[p]];
+        }
+    }
+
+    /**
+     * Get the side length of a cell
+     * @return the cell size
+     */
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * Get the cell containing a point
+     * @param x x-coordinate
+     * @param y y-coordinate
+     * @return the index of the cell, or -1 if the point is outside the grid
+     */
+    private int getCell(double x, double y) {
+        int i = (int)Math.floor((x - minX) / cellSize);
+        int j = (int)Math.floor((y - minY) / cellSize);
+        if (i < 0 || j < 0 || i >= width || j >= height)
+            return -1;
+        return j * width + i;
+    }
+
+    /**
+     * Test whether the cell containing a point overlaps an obstacle
+     * @param x x-coordinate
+     * @param y y-coordinate
+     * @return true if the cell is occupied or outside the grid
+     */
+    public boolean isOccupied(double x, double y) {
+        int cell = getCell(x, y);
+        return cell < 0 || occupied[cell];
+    }
+
+    /**
+     * Get the signed distance sampled at the centre of the cell containing a point
+     * @param x x-coordinate
+     * @param y y-coordinate
+     * @return the signed distance, or NaN outside the grid
+     */
+    public double getSignedDistance(double x, double y) {
+        int cell = getCell(x, y);
+        return cell < 0 ? Double.NaN : signedDistance[cell];
+    }
+
+    /**
+     * Get a lower bound on the distance from a point to the obstacles
+     * @param x x-coordinate
+     * @param y y-coordinate
+     * @return the lower bound, which is 0 if the point may touch an obstacle
+     */
+    public double getClearance(double x, double y) {
+        int cell = getCell(x, y);
+        if (cell < 0)
+            return 0.0;
+        return Math.max(0.0, signedDistance[cell] - 2.0 * halfDiagonal);
+    }
+
+    /**
+     * Classify a disk-bounded robot whose reference point is at (x, y)
+     * @param x                   x-coordinate of the reference point
+     * @param y                   y-coordinate of the reference point
+     * @param circumscribedRadius radius of a disk around the reference point containing the robot
+     * @param inscribedRadius     radius of a disk around the reference point contained in the robot
+     * @return FREE, COLLIDING or UNKNOWN
+     */
+    public int classify(double x, double y, double circumscribedRadius, double inscribedRadius) {
+        int cell = getCell(x, y);
+        if (cell < 0)
+            return UNKNOWN;
+        // the nearest occupied square is at least this far from any point in the cell
+        if (signedDistance[cell] - 2.0 * halfDiagonal > circumscribedRadius)
+            return FREE;
+        // a point inside an obstacle is at most this far from (x, y)
+        if (contactDistance[cell] + halfDiagonal < inscribedRadius)
+            return COLLIDING;
+        return UNKNOWN;
+    }
+}
@@ -5,22 +5,49 @@ import java.awt.Shape;
 import java.awt.geom.Area;
 import java.awt.geom.Path2D;
 import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntPredicate;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class Environment {
     private static final Logger logger = Logger.getLogger(Environment.class.getName());
-    private long collisionDetectionCount = 0;
+    private static final int PARALLEL_CUTOFF = 256;  // shorter paths are validated sequentially
+    private static final String MAP_DIRECTORY = ".cspace";  // where configuration space maps are saved
+    private final Environment root;  // holds the settings, this unless this is a view
+    private final PlannerMetrics metrics;
     private Area obstructedArea;
     private List<Shape> obstacles;
+    private List<Area> obstacleAreas;
+    private BoundingVolumeHierarchy hierarchy;  // bounding boxes of the obstacles
+    private CollisionKernel kernel;
+    private DistanceField distanceField;  // optional, classifies planar robots before the exact test
+    private final ConcurrentHashMap<Robot, ConfigurationSpaceMap> maps;  // optional, per planar robot
+    private CollisionCache cache;  // optional, remembers results of isValidConfiguration
+    private CollisionChecker checker = CollisionChecker.POLYGON;
+    private final ThreadLocal<MotionBuffers> motionBuffers;
+    
+    /**
+     * Algorithms for testing a configuration against the obstacles; both only test
+     * the obstacles whose bounding boxes overlap the robot's
+     */
+    public enum CollisionChecker {
+        AREA,    // intersect the robot's Area with each obstacle's Area
+        POLYGON  // separating axis test on convex pieces, see CollisionKernel
+    }
     
     /**
      * Read obstacles from a file
@@ -29,6 +56,10 @@ public class Environment {
      */
     @SuppressWarnings("boxing")
     public Environment(String filename) {        
+        root = this;
+        metrics = new PlannerMetrics();
+        maps = new ConcurrentHashMap<>();
+        motionBuffers = ThreadLocal.withInitial(MotionBuffers::new);
         Charset charset = Charset.forName("US-ASCII");
         Path file = FileSystems.getDefault().getPath(".", filename);  
         try (BufferedReader br = Files.newBufferedReader(file, charset)) {
@@ -41,9 +72,193 @@ public class Environment {
             e.printStackTrace();
         }
         obstructedArea = new Area();
+        obstacleAreas = new ArrayList<>();
+        double[] boxes = new double[4 * obstacles.size()];
+        for (int i = 0; i < obstacles.size(); ++i) {
+            Area area = new Area(obstacles.get(i));
+            obstructedArea.add(area);
+            obstacleAreas.add(area);
+            Rectangle2D bounds = area.getBounds2D();
+            boxes[4 * i] = bounds.getMinX();
+            boxes[4 * i + 1] = bounds.getMinY();
+            boxes[4 * i + 2] = bounds.getMaxX();
+            boxes[4 * i + 3] = bounds.getMaxY();
+        }
+        hierarchy = new BoundingVolumeHierarchy(boxes);
+        kernel = new CollisionKernel(obstacles);
+        logger.info(String.format("Read %d obstacles (%d convex pieces)", obstacles.size(), kernel.getNumberOfPieces()));
+    }
+    
+    /**
+     * Make a view of an environment
+     * @param root     the environment
+     * @param metrics  the metrics the view records to
+     */
+    private Environment(Environment root, PlannerMetrics metrics) {
+        this.root = root;
+        this.metrics = metrics;
+        obstructedArea = root.obstructedArea;
+        obstacles = root.obstacles;
+        obstacleAreas = root.obstacleAreas;
+        hierarchy = root.hierarchy;
+        kernel = root.kernel;
+        maps = root.maps;
+        motionBuffers = root.motionBuffers;
+    }
+    
+    /**
+     * Get a view of this environment that records its operations to other metrics. The
+     * view shares the obstacles and the settings: selecting a collision checker, a distance
+     * field, a configuration space map or the collision cache on either applies to both.
+     * @param metrics the metrics, usually those of a planner
+     * @return the view
+     */
+    public Environment withMetrics(PlannerMetrics metrics) {
+        assert(metrics != null);
+        return new Environment(root, metrics);
+    }
+    
+    /**
+     * Select the algorithm used by isValidConfiguration
+     * @param c the collision checker
+     */
+    public void setCollisionChecker(CollisionChecker c) {
+        assert(c != null);
+        root.checker = c;
+        clearCollisionCache();
+    }
+    
+    /**
+     * Rasterize the obstacles into an occupancy grid and a signed distance field, which
+     * then classifies most configurations of planar robots without an exact test
+     * @param cellSize side length of a cell
+     */
+    public void enableDistanceField(double cellSize) {
+        assert(cellSize > 0);
+        List<double[]> pieces = new ArrayList<>();
+        for (Shape s : obstacles)
+            pieces.addAll(CollisionKernel.decompose(s.getPathIterator(null)));
+        root.distanceField = new DistanceField(pieces, obstructedArea.getBounds2D(), cellSize);
+        clearCollisionCache();
+    }
+    
+    /**
+     * Stop using the distance field
+     */
+    public void disableDistanceField() {
+        root.distanceField = null;
+        clearCollisionCache();
+    }
+    
+    /**
+     * Get the distance field
+     * @return the distance field, or null if it is not enabled
+     */
+    public DistanceField getDistanceField() {
+        return root.distanceField;
+    }
+    
+    /**
+     * Precompute the configuration space obstacles of a planar robot for a number of
+     * headings, which then classify most of its configurations with a lookup. The map is
+     * saved under the .cspace directory, named after a digest of the obstacles, the robot
+     * and the parameters, and later calls with the same inputs load it instead.
+     * @param robot     the robot
+     * @param slices    number of headings
+     * @param cellSize  side length of a cell
+     */
+    public void enableConfigurationSpaceMap(PlanarRobot robot, int slices, double cellSize) {
+        assert(slices > 0);
+        assert(cellSize > 0);
+        List<double[]> pieces = new ArrayList<>();
         for (Shape s : obstacles)
-            obstructedArea.add(new Area(s));
-        logger.info(String.format("Read %d obstacles", obstacles.size()));
+            pieces.addAll(CollisionKernel.decompose(s.getPathIterator(null)));
+        Path file = Paths.get(".", MAP_DIRECTORY, ConfigurationSpaceMap.digest(pieces, robot, slices, cellSize) + ".gz");
+        if (Files.exists(file)) {
+            try {
+                maps.put(robot, ConfigurationSpaceMap.load(file));
+                clearCollisionCache();
+                logger.info("Loaded configuration space map " + file);
+                return;
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Cannot load " + file + ", rebuilding it", e);
+            }
+        }
+        long startTime = System.nanoTime();
+        ConfigurationSpaceMap map = new ConfigurationSpaceMap(pieces, robot, obstructedArea.getBounds2D(), slices, cellSize);
+        maps.put(robot, map);
+        clearCollisionCache();
+        logger.info(String.format("Built configuration space map in %.3f s, %.1f%% of cells decided",
+                (System.nanoTime() - startTime) / 1e9, 100.0 * map.getCoverage()));
+        try {
+            Files.createDirectories(file.getParent());
+            map.save(file);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Cannot save " + file, e);
+        }
+    }
+    
+    /**
+     * Stop using the configuration space map of a robot
+     * @param robot the robot
+     */
+    public void disableConfigurationSpaceMap(Robot robot) {
+        maps.remove(robot);
+        clearCollisionCache();
+    }
+    
+    /**
+     * Get the configuration space map of a robot
+     * @param robot the robot
+     * @return the map, or null if it is not enabled
+     */
+    public ConfigurationSpaceMap getConfigurationSpaceMap(Robot robot) {
+        return maps.get(robot);
+    }
+    
+    /**
+     * Put a cache in front of isValidConfiguration and getClearance, which motion
+     * validation calls for robots that bound their speed. Configurations are quantized to
+     * the tolerance, so configurations closer than the tolerance may share a result;
+     * choose a tolerance well below the resolution of motion validation. Changing the
+     * collision checker, the distance field or a configuration space map clears the cache.
+     * @param capacity   the maximum number of cached results
+     * @param tolerance  the spacing of the quantization grid
+     */
+    public void enableCollisionCache(int capacity, double tolerance) {
+        root.cache = new CollisionCache(capacity, tolerance);
+    }
+    
+    /**
+     * Stop using the collision cache
+     */
+    public void disableCollisionCache() {
+        root.cache = null;
+    }
+    
+    /**
+     * Forget the cached results, which were computed with the previous setup of the checks
+     */
+    private void clearCollisionCache() {
+        CollisionCache c = root.cache;
+        if (c != null)
+            c.clear();
+    }
+    
+    /**
+     * Get the collision cache, e.g. for its hit rate
+     * @return the cache, or null if it is not enabled
+     */
+    public CollisionCache getCollisionCache() {
+        return root.cache;
+    }
+    
+    /**
+     * Get the algorithm used by isValidConfiguration
+     * @return the collision checker
+     */
+    public CollisionChecker getCollisionChecker() {
+        return root.checker;
     }
     
     /**
@@ -51,7 +266,16 @@ public class Environment {
      * @return the number of collision detection checking
      */
     public long getCDCount() {
-        return collisionDetectionCount;
+        return metrics.getTotal(PlannerMetrics.Counter.COLLISION_CHECKS);
+    }
+    
+    /**
+     * Get the metrics of the operations on this environment; metrics made with these as
+     * their parent, such as those of the planners working in it, add their counts here
+     * @return the metrics
+     */
+    public PlannerMetrics getMetrics() {
+        return metrics;
     }
     
     /**
@@ -104,11 +328,20 @@ public class Environment {
         assert(robot != null);
         assert(q1.getDimension() == robot.getDimension());
         assert(q2.getDimension() == robot.getDimension());
-        return isValidMotion(robot, q1, robot.steer(q1, q2), resolution);
+        long startTime = System.nanoTime();
+        Trajectory trajectory = robot.steer(q1, q2);
+        metrics.record(PlannerMetrics.Counter.STEER_CALLS, startTime);
+        return isValidMotion(robot, q1, trajectory, resolution);
     }
     
     /**
-     * Test whether a trajectory is collision free
+     * Test whether a trajectory is collision free. Samples are checked in bisection order
+     * (the ends, the midpoint, the quarter points, ...) so that invalid motions fail after
+     * a few checks. When the robot bounds its speed, each check also measures the
+     * clearance, and parts of the motion the robot cannot cover in time are skipped
+     * (conservative advancement); intervals are never split below the resolution.
+     * Configurations are computed into per-thread buffers, so for robots that bound their
+     * speed the test allocates nothing.
      * @param robot          the robot
      * @param configuration  the begin configuration
      * @param trajectory     the trajectory
@@ -117,9 +350,215 @@ public class Environment {
      */
     public boolean isValidMotion(Robot robot, Vector configuration, Trajectory trajectory,
             double resolution) {
+        long startTime = System.nanoTime();
+        boolean result = checkMotion(robot, configuration, trajectory, resolution);
+        metrics.record(PlannerMetrics.Counter.MOTION_VALIDATIONS, startTime);
+        return result;
+    }
+    
+    /**
+     * Implementation of isValidMotion
+     */
+    private boolean checkMotion(Robot robot, Vector configuration, Trajectory trajectory, double resolution) {
         assert(robot != null);
         assert(configuration.getDimension() == robot.getDimension());
-        return isValidPath(robot, robot.interpolate(configuration, trajectory, resolution));
+        if (trajectory.size() == 0)
+            return isValidConfiguration(robot, configuration);
+        MotionBuffers buffers = motionBuffers.get();
+        double[] current = buffers.getCurrent(robot.getDimension());
+        System.arraycopy(configuration.values(), 0, current, 0, current.length);
+        double[] control = buffers.getControl(trajectory.getControlDimension());
+        for (int i = 0; i < trajectory.size(); ++i) {
+            trajectory.getControl(i, control);
+            double duration = trajectory.getDuration(i);
+            double speed = robot.getMaxSpeed(control);
+            boolean valid = Double.isInfinite(speed)
+                    ? isValidMotion(robot, current, control, duration, resolution)
+                    : isValidMotion(robot, current, control, duration, speed, resolution, buffers);
+            if (!valid)
+                return false;
+            robot.move(current, control, duration, current);
+        }
+        return true;
+    }
+    
+    /**
+     * Test whether applying one control is collision free by checking every sample at the
+     * resolution in bisection order, in parallel for long motions
+     * @param robot          the robot
+     * @param configuration  the begin configuration
+     * @param control        the control
+     * @param duration       the duration
+     * @param resolution     the resolution
+     * @return true if the motion is collision free, and false otherwise.
+     */
+    private boolean isValidMotion(Robot robot, double[] configuration, double[] control, double duration,
+            double resolution) {
+        int n = (int)Math.ceil(duration / resolution);
+        return allMatchInBisectionOrder(n, k -> {
+            double[] sample = motionBuffers.get().getSample(configuration.length);
+            robot.move(configuration, control, k == 0 ? 0.0 : k < n ? k * resolution : duration, sample);
+            return isValidConfiguration(robot, sample);
+        });
+    }
+    
+    /**
+     * Test whether applying one control is collision free by conservative advancement in
+     * bisection order: an interval is collision-free if the clearances at its ends, divided
+     * by the speed bound, cover its duration; otherwise its midpoint is checked and both
+     * halves are queued, until they are no longer than the resolution
+     * @param robot          the robot
+     * @param configuration  the begin configuration
+     * @param control        the control
+     * @param duration       the duration
+     * @param speed          bound on the speed of any point of the robot
+     * @param resolution     the resolution
+     * @param buffers        buffers of the calling thread
+     * @return true if the motion is collision free, and false otherwise.
+     */
+    private boolean isValidMotion(Robot robot, double[] configuration, double[] control, double duration,
+            double speed, double resolution, MotionBuffers buffers) {
+        double[] sample = buffers.getSample(configuration.length);
+        double first = getReach(robot, configuration, speed, duration);
+        if (first < 0.0)
+            return false;
+        if (duration <= 0.0)
+            return true;
+        robot.move(configuration, control, duration, sample);
+        double last = getReach(robot, sample, speed, duration);
+        if (last < 0.0)
+            return false;
+        // FIFO of intervals as (begin, end, reach at begin, reach at end)
+        double[] queue = buffers.queue;
+        int head = 0, tail = 0;
+        queue[tail++] = 0.0;
+        queue[tail++] = duration;
+        queue[tail++] = first;
+        queue[tail++] = last;
+        while (head < tail) {
+            double begin = queue[head++], end = queue[head++];
+            double reachBegin = queue[head++], reachEnd = queue[head++];
+            if (reachBegin + reachEnd >= end - begin || end - begin <= resolution)
+                continue;
+            double middle = 0.5 * (begin + end);
+            robot.move(configuration, control, middle, sample);
+            double reach = getReach(robot, sample, speed, 0.5 * (end - begin));
+            if (reach < 0.0)
+                return false;
+            if (tail + 8 > queue.length) {
+                System.arraycopy(queue, head, queue, 0, tail - head);
+                tail -= head;
+                head = 0;
+                if (tail + 8 > queue.length)
+                    queue = buffers.queue = Arrays.copyOf(queue, queue.length * 2);
+            }
+            queue[tail++] = begin;
+            queue[tail++] = middle;
+            queue[tail++] = reachBegin;
+            queue[tail++] = reach;
+            queue[tail++] = middle;
+            queue[tail++] = end;
+            queue[tail++] = reach;
+            queue[tail++] = reachEnd;
+        }
+        return true;
+    }
+    
+    /**
+     * Get the time a robot needs to reach an obstacle from a configuration
+     * @param robot          the robot
+     * @param configuration  the configuration
+     * @param speed          bound on the speed of any point of the robot
+     * @param limit          times beyond the limit are not needed
+     * @return the time, up to limit, or -1 if the configuration is in collision
+     */
+    private double getReach(Robot robot, double[] configuration, double speed, double limit) {
+        if (speed <= 0.0)
+            return isValidConfiguration(robot, configuration) ? Double.POSITIVE_INFINITY : -1.0;
+        double clearance = getClearance(robot, configuration, speed * limit);
+        if (clearance <= 0.0 && !isValidConfiguration(robot, configuration))
+            return -1.0;
+        return clearance / speed;
+    }
+    
+    /**
+     * Test samples 0..n in bisection order: both ends first, then the remaining samples in
+     * van der Corput order. Long sequences are tested in parallel.
+     * @param n     the last sample
+     * @param test  the test
+     * @return true if all samples pass the test, and false otherwise
+     */
+    private static boolean allMatchInBisectionOrder(int n, IntPredicate test) {
+        if (!test.test(0) || (n > 0 && !test.test(n)))
+            return false;
+        if (n <= 1)
+            return true;
+        int m = Integer.highestOneBit(n - 1) << 1;  // smallest power of two >= n
+        int shift = 32 - Integer.numberOfTrailingZeros(m);
+        if (n < PARALLEL_CUTOFF) {
+            for (int j = 1; j < m; ++j) {
+                int k = Integer.reverse(j) >>> shift;
+                if (k < n && !test.test(k))
+                    return false;
+            }
+            return true;
+        }
+        return IntStream.range(1, m).parallel()
+                        .map(j -> Integer.reverse(j) >>> shift)
+                        .filter(k -> k < n)
+                        .allMatch(test);
+    }
+    
+    /**
+     * Get a lower bound on the distance between a robot and the obstacles, up to a limit.
+     * Counts as one collision detection.
+     * @param robot          the robot
+     * @param configuration  the configuration
+     * @param limit          distances beyond the limit are not needed
+     * @return the bound if it is less than limit, and limit otherwise; 0 if the robot
+     *         touches or penetrates an obstacle
+     */
+    public double getClearance(Robot robot, Vector configuration, double limit) {
+        return getClearance(robot, configuration.values(), limit);
+    }
+    
+    /**
+     * Get a lower bound on the distance between a robot and the obstacles, up to a limit.
+     * Counts as one collision detection.
+     * @param robot          the robot
+     * @param configuration  the configuration
+     * @param limit          distances beyond the limit are not needed
+     * @return the bound if it is less than limit, and limit otherwise; 0 if the robot
+     *         touches or penetrates an obstacle
+     */
+    public double getClearance(Robot robot, double[] configuration, double limit) {
+        CollisionCache c = root.cache;
+        if (c != null) {
+            double cached = c.getClearance(robot, configuration, limit);
+            if (!Double.isNaN(cached))
+                return cached;
+        }
+        long startTime = System.nanoTime();
+        double result = computeClearance(robot, configuration, limit);
+        metrics.record(PlannerMetrics.Counter.COLLISION_CHECKS, startTime);
+        if (c != null)
+            c.putClearance(robot, configuration, limit, result);
+        return result;
+    }
+    
+    /**
+     * Implementation of getClearance
+     */
+    private double computeClearance(Robot robot, double[] configuration, double limit) {
+        assert(robot != null);
+        assert(configuration.length == robot.getDimension());
+        if (root.distanceField != null && robot instanceof PlanarRobot) {
+            double bound = root.distanceField.getClearance(configuration[0], configuration[1])
+                    - ((PlanarRobot)robot).getCircumscribedRadius();
+            if (bound >= limit)
+                return limit;
+        }
+        return kernel.getClearance(robot, configuration, limit);
     }
     
     /**
@@ -130,7 +569,9 @@ public class Environment {
      */
     public boolean isValidPath(Robot robot, List<Vector> path) {
         assert(robot != null);
-        return path.parallelStream().allMatch((config)->isValidConfiguration(robot, config));
+        if (path.isEmpty())
+            return true;
+        return allMatchInBisectionOrder(path.size() - 1, k -> isValidConfiguration(robot, path.get(k)));
     }
     
     /**
@@ -140,12 +581,137 @@ public class Environment {
      * @return true if the configuration is collision-free, and false otherwise
      */
     public boolean isValidConfiguration(Robot robot, Vector configuration) {
+        return isValidConfiguration(robot, configuration.values());
+    }
+    
+    /**
+     * Check whether a configuration is collision-free for a robot with the selected
+     * algorithm, consulting the collision cache, the configuration space map and the
+     * distance field first when they are enabled
+     * @param robot          the robot
+     * @param configuration  the configuration
+     * @return true if the configuration is collision-free, and false otherwise
+     */
+    @SuppressWarnings("boxing")
+    public boolean isValidConfiguration(Robot robot, double[] configuration) {
+        CollisionCache c = root.cache;
+        if (c == null)
+            return isValidConfiguration(robot, configuration, root.checker, true);
+        Boolean cached = c.get(robot, configuration);
+        if (cached != null)
+            return cached;
+        boolean result = isValidConfiguration(robot, configuration, root.checker, true);
+        c.put(robot, configuration, result);
+        return result;
+    }
+    
+    /**
+     * Check whether a configuration is collision-free for a robot with a given algorithm,
+     * e.g. to cross-check the algorithms against each other. The algorithm always runs:
+     * the collision cache, the configuration space maps and the distance field are not
+     * consulted.
+     * @param robot          the robot
+     * @param configuration  the configuration
+     * @param c              the collision checker
+     * @return true if the configuration is collision-free, and false otherwise
+     */
+    public boolean isValidConfiguration(Robot robot, Vector configuration, CollisionChecker c) {
+        return isValidConfiguration(robot, configuration.values(), c, false);
+    }
+    
+    /**
+     * Check whether a configuration is collision-free for a robot with a given algorithm
+     * @param robot          the robot
+     * @param configuration  the configuration
+     * @param c              the collision checker
+     * @param precomputed    whether the configuration space map and the distance field may
+     *                       answer before the algorithm
+     * @return true if the configuration is collision-free, and false otherwise
+     */
+    private boolean isValidConfiguration(Robot robot, double[] configuration, CollisionChecker c,
+            boolean precomputed) {
+        long startTime = System.nanoTime();
+        boolean result = checkConfiguration(robot, configuration, c, precomputed);
+        metrics.record(PlannerMetrics.Counter.COLLISION_CHECKS, startTime);
+        return result;
+    }
+    
+    /**
+     * Implementation of isValidConfiguration
+     */
+    private boolean checkConfiguration(Robot robot, double[] configuration, CollisionChecker c,
+            boolean precomputed) {
         assert(robot != null);
         assert(configuration != null);
-        ++collisionDetectionCount;
-        Area test = (Area)obstructedArea.clone();
-        test.intersect(robot.getArea(configuration));
-        return test.isEmpty();
+        ConfigurationSpaceMap map = !precomputed || maps.isEmpty() ? null : maps.get(robot);
+        if (map != null) {
+            int result = map.classify(configuration[0], configuration[1], configuration[2]);
+            if (result != DistanceField.UNKNOWN)
+                return result == DistanceField.FREE;
+        }
+        if (precomputed && root.distanceField != null && robot instanceof PlanarRobot) {
+            PlanarRobot planar = (PlanarRobot)robot;
+            int result = root.distanceField.classify(configuration[0], configuration[1],
+                    planar.getCircumscribedRadius(), planar.getInscribedRadius());
+            if (result != DistanceField.UNKNOWN)
+                return result == DistanceField.FREE;
+        }
+        if (c == CollisionChecker.POLYGON)
+            return kernel.isValidConfiguration(robot, configuration);
+        Area area = robot.getArea(new Vector(configuration));
+        Rectangle2D bounds = area.getBounds2D();
+        int[] candidates = new int[hierarchy.size()];
+        int found = hierarchy.query(bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY(),
+                new int[hierarchy.getStackSize()], candidates);
+        for (int i = 0; i < found; ++i) {
+            Area test = (Area)obstacleAreas.get(candidates[i]).clone();
+            test.intersect(area);
+            if (!test.isEmpty())
+                return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Per-thread buffers for motion validation
+     */
+    private static final class MotionBuffers {
+        private double[] current = new double[0];
+        private double[] control = new double[0];
+        private double[] sample = new double[0];
+        private double[] queue = new double[64];
+        
+        /**
+         * Get the buffer for the start of the current control
+         * @param dimension the dimension of the configurations
+         * @return the buffer
+         */
+        public double[] getCurrent(int dimension) {
+            if (current.length != dimension)
+                current = new double[dimension];
+            return current;
+        }
+        
+        /**
+         * Get the buffer for the current control
+         * @param dimension the dimension of the controls
+         * @return the buffer
+         */
+        public double[] getControl(int dimension) {
+            if (control.length != dimension)
+                control = new double[dimension];
+            return control;
+        }
+        
+        /**
+         * Get the buffer for a sample along the current control
+         * @param dimension the dimension of the configurations
+         * @return the buffer
+         */
+        public double[] getSample(int dimension) {
+            if (sample.length != dimension)
+                sample = new double[dimension];
+            return sample;
+        }
     }
-
 }
@@ -0,0 +1,140 @@
+package assignment_motion_planning;
+
+import java.util.Arrays;
+
+/**
+ * Min-heap of int items keyed by doubles, with D children per node and the position of
+ * every item so that its key can be decreased in place. Items are ids in [0, capacity);
+ * equal keys are ordered by item so that searches are deterministic.
+ */
+final class IndexedHeap {
+    private static final int D = 4;
+    private int[] items = new int[16];
+    private double[] keys = new double[16];
+    private int[] positions = new int[0];  // position of each item in the heap, or -1 if it is not in it
+    private int count = 0;
+
+    /**
+     * Empty the heap and make room for items up to a capacity
+     * @param capacity one more than the largest item
+     */
+    public void reset(int capacity) {
+        for (int i = 0; i < count; ++i)
+            positions[items[i]] = -1;
+        count = 0;
+        if (positions.length < capacity) {
+            int previous = positions.length;
+            positions = Arrays.copyOf(positions, Math.max(capacity, 2 * previous));
+            Arrays.fill(positions, previous, positions.length, -1);
+        }
+    }
+
+    /**
+     * Check whether the heap is empty
+     * @return true if there are no items
+     */
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Get the number of items
+     * @return the number of items
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Check whether an item is in the heap
+     * @param item the item
+     * @return true if it is
+     */
+    public boolean contains(int item) {
+        return positions[item] >= 0;
+    }
+
+    /**
+     * Get the smallest key
+     * @return the key of the first item, or infinity if the heap is empty
+     */
+    public double peekKey() {
+        return count > 0 ? keys[0] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Insert an item, or decrease its key if it is in the heap
+     * @param item  the item
+     * @param key   the key, which must not exceed the key of the item in the heap
+     */
+    public void offer(int item, double key) {
+        int i = positions[item];
+        if (i < 0) {
+            if (count == items.length) {
+                items = Arrays.copyOf(items, 2 * count);
+                keys = Arrays.copyOf(keys, 2 * count);
+            }
+            i = count++;
+        } else {
+            assert(key <= keys[i]);
+        }
+        siftUp(item, key, i);
+    }
+
+    /**
+     * Remove the item with the smallest key
+     * @return the item
+     */
+    public int poll() {
+        assert(count > 0);
+        int result = items[0];
+        positions[result] = -1;
+        if (--count > 0)
+            siftDown(items[count], keys[count], 0);
+        return result;
+    }
+
+    /**
+     * Move an item from a position towards the root until its parent is smaller
+     */
+    private void siftUp(int item, double key, int i) {
+        while (i > 0) {
+            int parent = (i - 1) / D;
+            if (!less(item, key, items[parent], keys[parent]))
+                break;
+            place(items[parent], keys[parent], i);
+            i = parent;
+        }
+        place(item, key, i);
+    }
+
+    /**
+     * Move an item from a position towards the leaves until its children are larger
+     */
+    private void siftDown(int item, double key, int i) {
+        while (true) {
+            int first = D * i + 1;
+            if (first >= count)
+                break;
+            int best = first;
+            for (int c = first + 1; c < Math.min(first + D, count); ++c)
+                if (less(items[c], keys[c], items[best], keys[best]))
+                    best = c;
+            if (!less(items[best], keys[best], item, key))
+                break;
+            place(items[best], keys[best], i);
+            i = best;
+        }
+        place(item, key, i);
+    }
+
+    private void place(int item, double key, int i) {
+        items[i] = item;
+        keys[i] = key;
+        positions[item] = i;
+    }
+
+    private static boolean less(int item1, double key1, int item2, double key2) {
+        return key1 < key2 || (key1 == key2 && item1 < item2);
+    }
+}
@@ -0,0 +1,306 @@
+package assignment_motion_planning;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Approximate nearest neighbor index: a forest of randomized KD-trees over the robot's
+ * embedding of the configurations (see Robot.embed). Every tree holds every configuration
+ * but splits on randomly chosen coordinates, so the trees make different mistakes. A
+ * query descends all trees best bin first, from one shared queue of unexplored branches
+ * ordered by their distance in the embedding, and stops after examining a fixed number
+ * of configurations; the examined configurations are ranked by Robot.getMetric on the
+ * store, so the forest keeps only the embeddings and the trees. More checks give a higher
+ * recall at a higher cost; measure it with measureRecall.
+ * The following paper describes the approach.
+ * Chanop Silpa-Anan and Richard Hartley,
+ * Optimised KD-trees for fast image descriptor matching,
+ * IEEE Conference on Computer Vision and Pattern Recognition, 2008.
+ * http://dx.doi.org/10.1109/CVPR.2008.4587638
+ */
+public class KDForest implements NearestNeighbors {
+    private final Robot robot;
+    private final ConfigurationStore store;
+    private final int dimension;  // of the embedding
+    private final int trees;
+    private int checks;
+    private final Random random = new Random(0);
+    private double[] points;  // embedding of each configuration
+    private int[] axes;       // split coordinate of each configuration in each tree
+    private int[] left;       // left child of each configuration in each tree, or -1
+    private int[] right;      // right child of each configuration in each tree, or -1
+    private int size = 0;
+    private final ThreadLocal<Search> searches = ThreadLocal.withInitial(Search::new);
+
+    /**
+     * Constructor
+     * @param robot   the robot
+     * @param store   the store of the configurations
+     * @param trees   the number of trees
+     * @param checks  the number of configurations a query examines
+     */
+    public KDForest(Robot robot, ConfigurationStore store, int trees, int checks) {
+        assert(robot != null && store.getDimension() == robot.getDimension());
+        assert(trees > 0);
+        this.robot = robot;
+        this.store = store;
+        this.dimension = robot.getEmbeddingDimension();
+        this.trees = trees;
+        setChecks(checks);
+        points = new double[dimension * 16];
+        axes = new int[trees * 16];
+        left = new int[trees * 16];
+        right = new int[trees * 16];
+    }
+
+    /**
+     * Set the number of configurations a query examines, the knob between speed and recall
+     * @param checks the number of checks
+     */
+    public void setChecks(int checks) {
+        assert(checks > 0);
+        this.checks = checks;
+    }
+
+    /**
+     * Get the number of configurations a query examines
+     * @return the number of checks
+     */
+    public int getChecks() {
+        return checks;
+    }
+
+    @Override
+    public ConfigurationStore getStore() {
+        return store;
+    }
+
+    @Override
+    public void add(int id) {
+        assert(id == size && id < store.size());
+        if (dimension * (size + 1) > points.length) {
+            int capacity = 2 * size;
+            points = Arrays.copyOf(points, dimension * capacity);
+            axes = Arrays.copyOf(axes, trees * capacity);
+            left = Arrays.copyOf(left, trees * capacity);
+            right = Arrays.copyOf(right, trees * capacity);
+        }
+        int item = size++;
+        double[] point = new double[dimension];
+        robot.embed(store.get(item), point);
+        System.arraycopy(point, 0, points, dimension * item, dimension);
+        for (int t = 0; t < trees; ++t) {
+            int slot = trees * item + t;
+            axes[slot] = random.nextInt(dimension);
+            left[slot] = right[slot] = -1;
+            if (item == 0)
+                continue;
+            // the first configuration is the root of every tree
+            int node = 0;
+            while (true) {
+                int parentSlot = trees * node + t;
+                boolean lower = point[axes[parentSlot]] < points[dimension * node + axes[parentSlot]];
+                int child = lower ? left[parentSlot] : right[parentSlot];
+                if (child < 0) {
+                    if (lower)
+                        left[parentSlot] = item;
+                    else
+                        right[parentSlot] = item;
+                    break;
+                }
+                node = child;
+            }
+        }
+    }
+
+    @Override
+    public int[] nearestKIndices(Vector query, int K) {
+        assert(K > 0);
+        return search(query, K, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Find configurations within a radius of a query among those examined, so some may
+     * be missed
+     */
+    @Override
+    public int[] withinRadiusIndices(Vector query, double radius) {
+        assert(radius >= 0);
+        return search(query, Integer.MAX_VALUE, radius);
+    }
+
+    /**
+     * Find up to K configurations within a radius of a query among those examined
+     * @param query   the query configuration
+     * @param K       the maximum number of configurations
+     * @param radius  the radius
+     * @return the ids of the configurations, nearest first
+     */
+    private int[] search(Vector query, int K, double radius) {
+        assert(query.getDimension() == robot.getDimension());
+        Search s = searches.get();
+        s.begin(K, size, dimension);
+        if (size > 0) {
+            double[] q = query.values(), configurations = store.values();
+            robot.embed(query, s.query);
+            for (int t = 0; t < trees; ++t)
+                s.push(0, t, 0.0);
+            // a K nearest query examines at least K configurations
+            int limit = K == Integer.MAX_VALUE ? checks : Math.max(checks, K);
+            int examined = 0;
+            while (s.count > 0 && examined < limit) {
+                int t = s.peekTree();
+                int node = s.pop();
+                // descend to a leaf, queueing the other side of every split
+                while (node >= 0) {
+                    if (s.visited[node] != s.generation) {
+                        s.visited[node] = s.generation;
+                        ++examined;
+                        double d = robot.getMetric(q, 0, configurations, robot.getDimension() * node);
+                        if (d <= radius)
+                            s.heap.offer(node, d);
+                    }
+                    int slot = trees * node + t;
+                    double diff = s.query[axes[slot]] - points[dimension * node + axes[slot]];
+                    int near = diff < 0 ? left[slot] : right[slot];
+                    int far = diff < 0 ? right[slot] : left[slot];
+                    if (far >= 0)
+                        s.push(far, t, diff * diff);
+                    node = near;
+                }
+            }
+        }
+        int[] items = new int[s.heap.size()];
+        s.heap.drain(items);
+        return items;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Measure how many of the true K nearest neighbors queries find, comparing with a
+     * search of every configuration; a neighbor that ties with the K-th nearest counts
+     * as found
+     * @param index    the index to measure
+     * @param robot    the robot whose metric defines the true neighbors
+     * @param queries  the query configurations
+     * @param K        number of neighbors
+     * @return the fraction of the true neighbors found, averaged over the queries
+     */
+    public static double measureRecall(NearestNeighbors index, Robot robot, List<Vector> queries, int K) {
+        assert(K > 0);
+        LinearNearestNeighbors exact = new LinearNearestNeighbors(robot, index.getStore());
+        for (int id = 0; id < index.size(); ++id)
+            exact.add(id);
+        if (exact.size() == 0 || queries.isEmpty())
+            return 1.0;
+        double total = 0.0;
+        for (Vector query : queries) {
+            List<Vector> truth = exact.nearestK(query, K);
+            double kth = robot.getMetric(query, truth.get(truth.size() - 1));
+            int found = 0;
+            for (Vector v : index.nearestK(query, K))
+                if (robot.getMetric(query, v) <= kth)
+                    ++found;
+            total += found / (double)truth.size();
+        }
+        return total / queries.size();
+    }
+
+    /**
+     * Per-thread state of a query: a min-heap of unexplored branches, the configurations
+     * examined so far, and the best ones among them
+     */
+    private static final class Search {
+        private int[] nodes = new int[16];
+        private int[] branchTrees = new int[16];
+        private double[] keys = new double[16];
+        private int count = 0;
+        private int[] visited = new int[0];  // generation in which each configuration was examined
+        private int generation = 0;
+        private double[] query = new double[0];
+        private final NeighborHeap heap = new NeighborHeap();
+
+        public void begin(int k, int size, int dimension) {
+            heap.reset(k);
+            count = 0;
+            if (visited.length < size)
+                visited = Arrays.copyOf(visited, Math.max(size, 2 * visited.length));
+            if (++generation == 0) {
+                Arrays.fill(visited, 0);
+                generation = 1;
+            }
+            if (query.length != dimension)
+                query = new double[dimension];
+        }
+
+        /**
+         * Queue a branch
+         * @param node  the root of the branch
+         * @param tree  the tree it belongs to
+         * @param key   lower bound on the squared distance to the branch in the embedding
+         */
+        public void push(int node, int tree, double key) {
+            if (count == nodes.length) {
+                nodes = Arrays.copyOf(nodes, 2 * count);
+                branchTrees = Arrays.copyOf(branchTrees, 2 * count);
+                keys = Arrays.copyOf(keys, 2 * count);
+            }
+            int i = count++;
+            while (i > 0 && keys[(i - 1) / 2] > key) {
+                int parent = (i - 1) / 2;
+                nodes[i] = nodes[parent];
+                branchTrees[i] = branchTrees[parent];
+                keys[i] = keys[parent];
+                i = parent;
+            }
+            nodes[i] = node;
+            branchTrees[i] = tree;
+            keys[i] = key;
+        }
+
+        /**
+         * Get the tree of the closest branch
+         * @return the tree
+         */
+        public int peekTree() {
+            return branchTrees[0];
+        }
+
+        /**
+         * Remove the closest branch
+         * @return its root
+         */
+        public int pop() {
+            int result = nodes[0];
+            --count;
+            int node = nodes[count], tree = branchTrees[count];
+            double key = keys[count];
+            int i = 0;
+            while (2 * i + 1 < count) {
+                int c = 2 * i + 1;
+                if (c + 1 < count && keys[c + 1] < keys[c])
+                    ++c;
+                if (keys[c] >= key)
+                    break;
+                nodes[i] = nodes[c];
+                branchTrees[i] = branchTrees[c];
+                keys[i] = keys[c];
+                i = c;
+            }
+            nodes[i] = node;
+            branchTrees[i] = tree;
+            keys[i] = key;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package assignment_motion_planning;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Nearest neighbor index that compares the query with every configuration. It works with
+ * any metric, so it serves as the reference for the other indices and as the brute-force
+ * index of MotionPlanner.setBruteForceNeighbors. The query is compared with Robot.getMetric
+ * on the flat array of the store, so the index holds nothing per configuration; a large
+ * index is scanned in chunks in parallel, each chunk selecting its best K into a heap of
+ * its own before the heaps are merged, so no distance is boxed and no entry is allocated
+ * per configuration.
+ * Queries into a buffer of the caller allocate nothing once the calling thread has made
+ * a query of the same size, except for the tasks of the parallel scan when the index
+ * holds more than one chunk.
+ */
+public class LinearNearestNeighbors implements NearestNeighbors {
+    private static final int CHUNK_SIZE = 4096;  // configurations scanned by one task
+    private final Robot robot;
+    private final ConfigurationStore store;
+    private final int dimension;
+    private int size = 0;
+    private final ThreadLocal<Search> searches;
+
+    /**
+     * Constructor
+     * @param robot  the robot whose metric is used
+     * @param store  the store of the configurations
+     */
+    public LinearNearestNeighbors(Robot robot, ConfigurationStore store) {
+        assert(robot != null && store.getDimension() == robot.getDimension());
+        this.robot = robot;
+        this.store = store;
+        this.dimension = robot.getDimension();
+        searches = ThreadLocal.withInitial(() -> new Search(dimension));
+    }
+
+    @Override
+    public ConfigurationStore getStore() {
+        return store;
+    }
+
+    @Override
+    public void add(int id) {
+        assert(id == size && id < store.size());
+        ++size;
+    }
+
+    @Override
+    public int[] nearestKIndices(Vector query, int K) {
+        assert(K > 0);
+        return search(query, K, Double.POSITIVE_INFINITY);
+    }
+
+    @Override
+    public int[] withinRadiusIndices(Vector query, double radius) {
+        assert(radius >= 0);
+        return search(query, Integer.MAX_VALUE, radius);
+    }
+
+    @Override
+    public int nearestKIndices(Vector query, int K, int[] result) {
+        assert(K > 0 && result.length >= K);
+        Search s = searches.get();
+        int n = search(query.values(), K, Double.POSITIVE_INFINITY, s);
+        System.arraycopy(s.items, 0, result, 0, n);
+        return n;
+    }
+
+    @Override
+    public int withinRadiusIndices(Vector query, double radius, int[] result) {
+        assert(radius >= 0);
+        Search s = searches.get();
+        int n = search(query.values(), Integer.MAX_VALUE, radius, s);
+        System.arraycopy(s.items, 0, result, 0, Math.min(n, result.length));
+        return n;
+    }
+
+    /**
+     * Find up to K configurations within a radius of a query
+     * @param query   the query configuration
+     * @param K       the maximum number of configurations
+     * @param radius  the radius
+     * @return the ids of the configurations, nearest first
+     */
+    private int[] search(Vector query, int K, double radius) {
+        Search s = searches.get();
+        int n = search(query.values(), K, radius, s);
+        return Arrays.copyOf(s.items, n);
+    }
+
+    /**
+     * Find up to K configurations within a radius of a query, leaving their ids in
+     * the items of the search
+     * @param query   coordinates of the query configuration
+     * @param K       the maximum number of configurations
+     * @param radius  the radius
+     * @param s       the search of the calling thread
+     * @return the number of configurations found
+     */
+    private int search(double[] query, int K, double radius, Search s) {
+        assert(query.length == dimension);
+        System.arraycopy(query, 0, s.query, 0, dimension);
+        double[] coordinates = store.values();
+        int chunks = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        if (chunks <= 1) {
+            s.heap.reset(K);
+            scan(s.query, coordinates, 0, size, radius, s.heap);
+        } else {
+            s.prepare(chunks, K);
+            IntStream.range(0, chunks).parallel()
+                    .forEach(c -> scan(s.query, coordinates, c * CHUNK_SIZE, Math.min(size, (c + 1) * CHUNK_SIZE), radius, s.heaps[c]));
+            s.heap.reset(K);
+            for (int c = 0; c < chunks; ++c)
+                s.heap.offerAll(s.heaps[c]);
+        }
+        if (s.items.length < s.heap.size())
+            s.items = new int[Math.max(s.heap.size(), 2 * s.items.length)];
+        return s.heap.drain(s.items);
+    }
+
+    /**
+     * Offer the configurations of a range within a radius of a query to a heap
+     * @param query        coordinates of the query configuration
+     * @param coordinates  the array of the store
+     * @param from         first configuration of the range
+     * @param to           end of the range, exclusive
+     * @param radius       the radius
+     * @param heap         the heap
+     */
+    private void scan(double[] query, double[] coordinates, int from, int to, double radius, NeighborHeap heap) {
+        for (int i = from; i < to; ++i) {
+            double d = robot.getMetric(query, 0, coordinates, dimension * i);
+            if (d <= radius && d < heap.worst())
+                heap.offer(i, d);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Per-thread state of a query: the query coordinates, one heap per chunk, the merged
+     * heap and the indices it drains into
+     */
+    private static final class Search {
+        private final double[] query;
+        private NeighborHeap[] heaps = new NeighborHeap[0];
+        private final NeighborHeap heap = new NeighborHeap();
+        private int[] items = new int[16];
+
+        public Search(int dimension) {
+            query = new double[dimension];
+        }
+
+        public void prepare(int chunks, int k) {
+            if (heaps.length < chunks) {
+                int old = heaps.length;
+                heaps = Arrays.copyOf(heaps, chunks);
+                for (int c = old; c < chunks; ++c)
+                    heaps[c] = new NeighborHeap();
+            }
+            for (int c = 0; c < chunks; ++c)
+                heaps[c].reset(k);
+        }
+    }
+}
@@ -1,13 +1,9 @@
 package assignment_motion_planning;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.PriorityQueue;
 import java.util.Random;
-import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.logging.Logger;
-import java.util.Collection;
-import java.util.stream.Collectors;
 
 import javafx.geometry.Point2D;
 import javafx.util.Pair;
@@ -19,7 +15,11 @@ public abstract class MotionPlanner {
     private Robot robot;    // the robot
     private Vector start;   // start configuration
     private Vector goal;    // goal configuration
-    private Environment environment;  // workspace
+    private Environment environment;  // view of the workspace that records to the planner's metrics
+    private final PlannerMetrics metrics;
+    private static final int TREES = 4;  // trees of the forest for approximate neighbors
+    private final ConfigurationStore configurations;  // nodes of the planner, by id
+    private NearestNeighbors index;  // searches the configurations for neighbors
     private int defaultSize = 1000;  // default size of data structures
     private int numberOfRandomSample = 0;
     private int numberOfFreeRandomSample = 0;
@@ -30,8 +30,11 @@ public abstract class MotionPlanner {
      */
     protected MotionPlanner(Environment env, Robot r) {
         assert(env != null && r != null);
-        this.environment = env;
+        this.metrics = new PlannerMetrics(env.getMetrics());
+        this.environment = env.withMetrics(metrics);
         this.robot = r;
+        this.configurations = new ConfigurationStore(r.getDimension());
+        this.index = r.createNearestNeighbors(configurations);
     }
     
   
@@ -43,6 +46,32 @@ public abstract class MotionPlanner {
         return null;
     }
     
+    /**
+     * Receives the edges of a planner as workspace coordinates of their ends
+     */
+    public interface EdgeVisitor {
+        /**
+         * Visit an edge
+         * @param x1  x of the first end
+         * @param y1  y of the first end
+         * @param x2  x of the second end
+         * @param y2  y of the second end
+         */
+        void visit(double x1, double y1, double x2, double y2);
+    }
+    
+    /**
+     * Visit the edges without building a list of them; by default the edges from getEdges
+     * @param visitor the visitor
+     */
+    public void forEachEdge(EdgeVisitor visitor) {
+        List<Pair<Point2D, Point2D>> edges = getEdges();
+        if (edges == null)
+            return;
+        for (Pair<Point2D, Point2D> edge : edges)
+            visitor.visit(edge.getKey().getX(), edge.getKey().getY(), edge.getValue().getX(), edge.getValue().getY());
+    }
+    
     /**
      * Find a valid path between startNode and goalNode
      * @param s  the desired start node.
@@ -55,10 +84,16 @@ public abstract class MotionPlanner {
         assert(g.getDimension() == getRobot().getDimension());
         start = robot.normalize(s);
         goal = robot.normalize(g);
-        reset();
-        setup();
-        grow(defaultSize);
-        return findPath();
+        PlannerMetrics.Phase previous = getMetrics().enter(PlannerMetrics.Phase.SETUP);
+        try {
+            reset();
+            setup();
+            grow(defaultSize);
+            getMetrics().enter(PlannerMetrics.Phase.QUERY);
+            return findPath();
+        } finally {
+            getMetrics().enter(previous);
+        }
     }
     
     /**
@@ -69,7 +104,12 @@ public abstract class MotionPlanner {
     public final void grow(int K) {
         assert(K > 0);
         long startTime = System.currentTimeMillis();
-        growMap(K);
+        PlannerMetrics.Phase previous = getMetrics().enter(PlannerMetrics.Phase.GROW);
+        try {
+            growMap(K);
+        } finally {
+            getMetrics().enter(previous);
+        }
         long endTime   = System.currentTimeMillis();
         long totalTime = endTime - startTime;
         logger.info(String.format("Growing %d nodes takes %f seconds. %f nodes per second.", 
@@ -115,8 +155,8 @@ public abstract class MotionPlanner {
     }
     
     /**
-     * Get the environment
-     * @return the environment
+     * Get the environment; its operations are recorded to the planner's metrics
+     * @return a view of the environment the planner was given
      */
     public final Environment getEnvironment() {
         return environment;
@@ -130,6 +170,60 @@ public abstract class MotionPlanner {
         return robot;
     }
     
+    /**
+     * Get the metrics the planner records into, including the collision checks it makes
+     * through its environment; they belong to this planner alone and pass their counts
+     * on to the environment's metrics
+     * @return the metrics
+     */
+    public final PlannerMetrics getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * Take a snapshot of the metrics, broken down by planner phase
+     * @return the snapshot
+     */
+    public final PlannerMetrics.Snapshot getMetricsSnapshot() {
+        return getMetrics().snapshot();
+    }
+    
+    /**
+     * Record that a vertex or an edge was added to the data structures
+     */
+    protected final void recordInsertion() {
+        getMetrics().increment(PlannerMetrics.Counter.GRAPH_INSERTIONS);
+    }
+    
+    /**
+     * Record that a search expanded a number of nodes
+     * @param n the number of nodes
+     */
+    protected final void recordExpansions(long n) {
+        getMetrics().add(PlannerMetrics.Counter.SEARCH_EXPANSIONS, n);
+    }
+    
+    /**
+     * Record that the backward half of a bidirectional search expanded a number of nodes
+     * @param n the number of nodes
+     */
+    protected final void recordBackwardExpansions(long n) {
+        getMetrics().add(PlannerMetrics.Counter.BACKWARD_EXPANSIONS, n);
+    }
+    
+    /**
+     * Call the robot's steering method and record it
+     * @param q1  begin configuration
+     * @param q2  end configuration
+     * @return a trajectory
+     */
+    protected final Trajectory steer(Vector q1, Vector q2) {
+        long startTime = System.nanoTime();
+        Trajectory result = robot.steer(q1, q2);
+        getMetrics().record(PlannerMetrics.Counter.STEER_CALLS, startTime);
+        return result;
+    }
+    
     /**
      * Initialize the planner before we grow the data structures
      */
@@ -170,7 +264,12 @@ public abstract class MotionPlanner {
         assert(g.getDimension() == getRobot().getDimension());
         start = robot.normalize(s);
         goal = robot.normalize(g);
-        return query();
+        PlannerMetrics.Phase previous = getMetrics().enter(PlannerMetrics.Phase.QUERY);
+        try {
+            return query();
+        } finally {
+            getMetrics().enter(previous);
+        }
     }
     
     /**
@@ -191,34 +290,161 @@ public abstract class MotionPlanner {
     }
     
     /**
-     * Find query's nearest neighbor in a set of configurations
-     * @param configurations  a set of configurations
-     * @param query           query configuration
+     * Get the store of the planner's configurations. The nearest neighbor index searches
+     * this store, so the ids of its configurations are the ids the neighbor queries return.
+     * @return the store
+     */
+    protected final ConfigurationStore getConfigurationStore() {
+        return configurations;
+    }
+    
+    /**
+     * Add the configurations added to the store since the last call to the nearest
+     * neighbor index
+     */
+    protected final void addToIndex() {
+        for (int id = index.size(); id < configurations.size(); ++id)
+            index.add(id);
+    }
+    
+    /**
+     * Remove all configurations from the nearest neighbor index; the store is cleared
+     * by the planner
+     */
+    protected final void clearIndex() {
+        index.clear();
+    }
+    
+    /**
+     * Switch between the robot's exact index and the brute-force index, which compares a
+     * query with every configuration: it is slower on large indices but needs nothing of
+     * the metric, and answers the queries of nearestKNeighborIds into a buffer without
+     * allocating. The indexed configurations are kept.
+     * @param bruteForce  true for the brute-force index, false for the robot's index
+     */
+    public void setBruteForceNeighbors(boolean bruteForce) {
+        replaceIndex(bruteForce ? new LinearNearestNeighbors(robot, configurations) : robot.createNearestNeighbors(configurations));
+    }
+    
+    /**
+     * Switch between exact and approximate nearest neighbors. Approximate neighbors come
+     * from a KD-forest over the robot's embedding that examines a fixed number of
+     * configurations per query; the indexed configurations are kept.
+     * @param checks  configurations a query examines, or 0 for the robot's exact index
+     */
+    public void setApproximateNeighbors(int checks) {
+        assert(checks >= 0);
+        if (checks > 0 && index instanceof KDForest) {
+            ((KDForest)index).setChecks(checks);
+            return;
+        }
+        replaceIndex(checks > 0 ? new KDForest(robot, configurations, TREES, checks) : robot.createNearestNeighbors(configurations));
+    }
+    
+    /**
+     * Index the indexed configurations in another index and search that one
+     * @param next the new, empty index over the same store
+     */
+    private void replaceIndex(NearestNeighbors next) {
+        for (int id = 0; id < index.size(); ++id)
+            next.add(id);
+        index = next;
+    }
+    
+    /**
+     * Measure the recall of the nearest neighbor index on random configurations
+     * @param queries  number of queries
+     * @param K        number of neighbors
+     * @return the fraction of the true K nearest neighbors found, 1 for an exact index
+     */
+    public double measureNeighborRecall(int queries, int K) {
+        Random r = new Random(1);
+        List<Vector> configurations = new ArrayList<>();
+        for (int i = 0; i < queries; ++i)
+            configurations.add(robot.getRandomConfiguration(environment, r));
+        return KDForest.measureRecall(index, robot, configurations, K);
+    }
+    
+    /**
+     * Find query's nearest neighbor among the indexed configurations
+     * @param query  query configuration
      * @return nearest neighbor
      */
-    protected final Vector nearestNeighbor(Collection<Vector> configurations, Vector query) {
-        return nearestKNeighbors(configurations, query, 1).get(0);
+    protected final Vector nearestNeighbor(Vector query) {
+        return nearestKNeighbors(query, 1).get(0);
     }
     
     /**
-     * Find query's K-nearest neighbors in a set of configurations
-     * @param configurations  a set of configurations
-     * @param query           a query configuration
-     * @param K               number of neighbors
-     * @return K-nearest neighbors
+     * Find query's K-nearest neighbors among the indexed configurations
+     * @param query  a query configuration
+     * @param K      number of neighbors
+     * @return K-nearest neighbors, nearest first
      */
-    @SuppressWarnings("boxing")
-    protected final List<Vector> nearestKNeighbors(Collection<Vector> configurations, Vector query, int K) {
+    protected final List<Vector> nearestKNeighbors(Vector query, int K) {
         assert(query.getDimension() == getRobot().getDimension());
-        List<SimpleImmutableEntry<Vector, Double>> temp = configurations.parallelStream()
-                                                                        .map(config -> new SimpleImmutableEntry<Vector, Double>(config, getRobot().getMetric(query, config))).collect(Collectors.toList());
-        PriorityQueue<SimpleImmutableEntry<Vector, Double>> pq = new PriorityQueue<>(K, (a, b) -> Double.compare(b.getValue(), a.getValue()));
-        for (SimpleImmutableEntry<Vector, Double> entry : temp) {
-            if (pq.size() == K && entry.getValue() < pq.peek().getValue())
-                pq.poll();
-            if (pq.size() < K)
-                pq.offer(entry);
-        }
-        return pq.stream().map((n)->n.getKey()).collect(Collectors.toList());
+        long startTime = System.nanoTime();
+        List<Vector> result = index.nearestK(query, K);
+        getMetrics().record(PlannerMetrics.Counter.NEAREST_NEIGHBOR_QUERIES, startTime);
+        return result;
+    }
+    
+    /**
+     * Find the indexed configurations within a radius of query
+     * @param query   a query configuration
+     * @param radius  the radius
+     * @return the configurations whose metric from query is at most radius, nearest first
+     */
+    protected final List<Vector> nearNeighbors(Vector query, double radius) {
+        assert(query.getDimension() == getRobot().getDimension());
+        long startTime = System.nanoTime();
+        List<Vector> result = index.withinRadius(query, radius);
+        getMetrics().record(PlannerMetrics.Counter.NEAREST_NEIGHBOR_QUERIES, startTime);
+        return result;
+    }
+    
+    /**
+     * Find query's K-nearest neighbors among the indexed configurations, as ids in the
+     * order in which the configurations were indexed
+     * @param query  a query configuration
+     * @param K      number of neighbors
+     * @return ids of the K-nearest neighbors, nearest first
+     */
+    protected final int[] nearestKNeighborIds(Vector query, int K) {
+        assert(query.getDimension() == getRobot().getDimension());
+        long startTime = System.nanoTime();
+        int[] result = index.nearestKIndices(query, K);
+        getMetrics().record(PlannerMetrics.Counter.NEAREST_NEIGHBOR_QUERIES, startTime);
+        return result;
+    }
+    
+    /**
+     * Find query's K-nearest neighbors among the indexed configurations into a buffer, as
+     * ids in the order in which the configurations were indexed
+     * @param query   a query configuration
+     * @param K       number of neighbors
+     * @param result  output, at least K ids, nearest first
+     * @return the number of ids written
+     */
+    protected final int nearestKNeighborIds(Vector query, int K, int[] result) {
+        assert(query.getDimension() == getRobot().getDimension());
+        long startTime = System.nanoTime();
+        int count = index.nearestKIndices(query, K, result);
+        getMetrics().record(PlannerMetrics.Counter.NEAREST_NEIGHBOR_QUERIES, startTime);
+        return count;
+    }
+    
+    /**
+     * Find the indexed configurations within a radius of query, as ids in the order in
+     * which the configurations were indexed
+     * @param query   a query configuration
+     * @param radius  the radius
+     * @return ids of the configurations whose metric from query is at most radius, nearest first
+     */
+    protected final int[] nearNeighborIds(Vector query, double radius) {
+        assert(query.getDimension() == getRobot().getDimension());
+        long startTime = System.nanoTime();
+        int[] result = index.withinRadiusIndices(query, radius);
+        getMetrics().record(PlannerMetrics.Counter.NEAREST_NEIGHBOR_QUERIES, startTime);
+        return result;
     }
 }
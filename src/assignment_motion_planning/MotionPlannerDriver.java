@@ -88,7 +88,7 @@ public class MotionPlannerDriver extends Application {
         Trajectory path = mp.solve(start, goal);
         //Trajectory path = robot.steer(start, goal);
         if (DRAW_EDGES) {
-            mpView.drawEdges(mp.getEdges());
+            mp.forEachEdge(mpView::drawEdge);
         }
         if (path != null) {
             List<Vector> interpolatedPath = robot.interpolate(start, path, RESOLUTION);
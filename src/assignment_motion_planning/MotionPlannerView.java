@@ -85,12 +85,23 @@ public class MotionPlannerView extends Group {
         for (Pair<Point2D, Point2D> entry : edges) {
             Point2D from = entry.getKey();
             Point2D to = entry.getValue();
-            Line line = new Line(from.getX(), from.getY(), to.getX(), to.getY());
-            line.setStrokeWidth(1.0 / SCALE);
-            this.getChildren().add(line);
+            drawEdge(from.getX(), from.getY(), to.getX(), to.getY());
         }
     }
     
+    /**
+     * Draw an edge
+     * @param x1  x of the first end
+     * @param y1  y of the first end
+     * @param x2  x of the second end
+     * @param y2  y of the second end
+     */
+    public void drawEdge(double x1, double y1, double x2, double y2) {
+        Line line = new Line(x1, y1, x2, y2);
+        line.setStrokeWidth(1.0 / SCALE);
+        this.getChildren().add(line);
+    }
+    
     /**
      * Animate the path
      * @param path the desired list of configurations of the robot
@@ -0,0 +1,135 @@
+package assignment_motion_planning;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Index of configurations that answers nearest neighbor queries under a robot's metric.
+ * The configurations live in a ConfigurationStore, usually the planner's, and the index
+ * refers to them by id: it keeps only the structure of its search, so vectors are made
+ * only for the results of nearestK, withinRadius and getConfigurations.
+ */
+public interface NearestNeighbors {
+    /**
+     * Get the store of the configurations
+     * @return the store
+     */
+    ConfigurationStore getStore();
+
+    /**
+     * Index a configuration of the store; configurations are indexed in the order of
+     * their ids, so the id is size()
+     * @param id the id of the configuration
+     */
+    void add(int id);
+
+    /**
+     * Find the K configurations nearest to a query
+     * @param query  the query configuration
+     * @param K      number of neighbors
+     * @return up to K configurations, nearest first
+     */
+    default List<Vector> nearestK(Vector query, int K) {
+        return toConfigurations(nearestKIndices(query, K));
+    }
+
+    /**
+     * Find all configurations within a radius of a query
+     * @param query   the query configuration
+     * @param radius  the radius
+     * @return the configurations whose metric from the query is at most radius, nearest first
+     */
+    default List<Vector> withinRadius(Vector query, double radius) {
+        return toConfigurations(withinRadiusIndices(query, radius));
+    }
+
+    /**
+     * Find the K configurations nearest to a query, as ids in the store
+     * @param query  the query configuration
+     * @param K      number of neighbors
+     * @return up to K ids, nearest first
+     */
+    int[] nearestKIndices(Vector query, int K);
+
+    /**
+     * Find all configurations within a radius of a query, as ids in the store
+     * @param query   the query configuration
+     * @param radius  the radius
+     * @return the ids of the configurations within the radius, nearest first
+     */
+    int[] withinRadiusIndices(Vector query, double radius);
+
+    /**
+     * Find the K configurations nearest to a query into a buffer of the caller; by default
+     * the ids from nearestKIndices are copied
+     * @param query   the query configuration
+     * @param K       number of neighbors
+     * @param result  output, at least K ids, nearest first
+     * @return the number of ids written
+     */
+    default int nearestKIndices(Vector query, int K, int[] result) {
+        assert(result.length >= K);
+        int[] found = nearestKIndices(query, K);
+        System.arraycopy(found, 0, result, 0, found.length);
+        return found.length;
+    }
+
+    /**
+     * Find all configurations within a radius of a query into a buffer of the caller; by
+     * default the ids from withinRadiusIndices are copied
+     * @param query   the query configuration
+     * @param radius  the radius
+     * @param result  output, the nearest ids within the radius that fit, nearest first
+     * @return the number of configurations within the radius, which is more than the
+     *         number written if the buffer is too small
+     */
+    default int withinRadiusIndices(Vector query, double radius, int[] result) {
+        int[] found = withinRadiusIndices(query, radius);
+        System.arraycopy(found, 0, result, 0, Math.min(found.length, result.length));
+        return found.length;
+    }
+
+    /**
+     * Find the configuration nearest to a query
+     * @param query the query configuration
+     * @return the nearest configuration, or null if the index is empty
+     */
+    default Vector nearest(Vector query) {
+        List<Vector> result = nearestK(query, 1);
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    /**
+     * Get the indexed configurations
+     * @return the configurations in the order of their ids
+     */
+    default List<Vector> getConfigurations() {
+        List<Vector> result = new ArrayList<>(size());
+        for (int id = 0; id < size(); ++id)
+            result.add(getStore().get(id));
+        return result;
+    }
+
+    /**
+     * Get the number of indexed configurations
+     * @return the number of configurations
+     */
+    int size();
+
+    /**
+     * Remove all configurations from the index; the store is left alone
+     */
+    void clear();
+
+    /**
+     * Look up configurations by id
+     * @param ids  ids in the store
+     * @return the configurations
+     */
+    private List<Vector> toConfigurations(int[] ids) {
+        List<Vector> result = new ArrayList<>(ids.length);
+        for (int id : ids)
+            result.add(getStore().get(id));
+        return result;
+    }
+}
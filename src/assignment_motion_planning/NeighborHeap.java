@@ -0,0 +1,118 @@
+package assignment_motion_planning;
+
+import java.util.Arrays;
+
+/**
+ * Max-heap of (item, distance) pairs that keeps the K nearest items offered to it, used
+ * by the nearest neighbor indices. With K = Integer.MAX_VALUE it keeps every item, which
+ * serves radius queries.
+ */
+final class NeighborHeap {
+    private int[] items = new int[16];
+    private double[] distances = new double[16];
+    private int count = 0;
+    private int K = 0;
+
+    /**
+     * Empty the heap and set the number of items to keep
+     * @param k the number of items to keep
+     */
+    public void reset(int k) {
+        assert(k > 0);
+        K = k;
+        count = 0;
+    }
+
+    /**
+     * Check whether the heap holds K items
+     * @return true if another item must beat the worst to be kept
+     */
+    public boolean isFull() {
+        return count == K;
+    }
+
+    /**
+     * Get the largest distance kept
+     * @return the distance of the worst item, or infinity if the heap is not full
+     */
+    public double worst() {
+        return count == K ? distances[0] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Get the number of items kept
+     * @return the number of items
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Keep an item if it is among the best K so far
+     * @param item      the item
+     * @param distance  its distance to the query
+     */
+    public void offer(int item, double distance) {
+        if (count < K) {
+            if (count == items.length) {
+                items = Arrays.copyOf(items, 2 * count);
+                distances = Arrays.copyOf(distances, 2 * count);
+            }
+            int i = count++;
+            while (i > 0 && distances[(i - 1) / 2] < distance) {
+                items[i] = items[(i - 1) / 2];
+                distances[i] = distances[(i - 1) / 2];
+                i = (i - 1) / 2;
+            }
+            items[i] = item;
+            distances[i] = distance;
+        } else if (distance < distances[0]) {
+            siftDown(item, distance, count);
+        }
+    }
+
+    /**
+     * Offer every item kept by another heap, which is left unchanged
+     * @param other the other heap
+     */
+    public void offerAll(NeighborHeap other) {
+        for (int i = 0; i < other.count; ++i)
+            offer(other.items[i], other.distances[i]);
+    }
+
+    /**
+     * Put an item at the root of the first n entries and restore the heap order
+     */
+    private void siftDown(int item, double distance, int n) {
+        int i = 0;
+        while (2 * i + 1 < n) {
+            int c = 2 * i + 1;
+            if (c + 1 < n && distances[c + 1] > distances[c])
+                ++c;
+            if (distances[c] <= distance)
+                break;
+            items[i] = items[c];
+            distances[i] = distances[c];
+            i = c;
+        }
+        if (n > 0) {
+            items[i] = item;
+            distances[i] = distance;
+        }
+    }
+
+    /**
+     * Empty the heap
+     * @param result  receives the items, nearest first; must hold size() elements
+     * @return the number of items
+     */
+    public int drain(int[] result) {
+        int n = count;
+        for (int m = count; m > 0; --m) {
+            result[m - 1] = items[0];
+            siftDown(items[m - 1], distances[m - 1], m - 1);
+        }
+        count = 0;
+        return n;
+    }
+}
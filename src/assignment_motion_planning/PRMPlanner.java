@@ -7,21 +7,34 @@
  */
 package assignment_motion_planning;
 
-import java.util.Collection;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.NavigableSet;
 import java.util.Random;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class PRMPlanner extends MotionPlanner {
     private int numberOfAttempts = 10;
-    // map that acts as the graph for the roadmap
-    private HashMap<Vector, HashMap<Vector, Double>> graph;
+    private static final double GAMMA_MARGIN = 1.1;  // how far gamma exceeds the bound of PRM*
+    // configurations of the roadmap, addressed by id; the store the index searches
+    private ConfigurationStore nodes;
+    // graph for the roadmap over the ids of the configurations, weighted by the metric
+    private Roadmap graph;
+    // lazy mode adds edges without collision checking and validates them on demand
+    private boolean lazy = false;
+    // PRM* connects a new vertex to every vertex within a radius that shrinks as the roadmap grows
+    private boolean optimal = false;
+    // batched construction generates this many free samples before connecting them, or 0 to connect each sample at once
+    private int batchSize = 0;
+    // edges that have been checked in lazy mode, as keys from edgeKey
+    private HashSet<Long> checked = new HashSet<>();
+    // A* over the roadmap, keeping its arrays from one query to the next
+    private RoadmapSearch search = new RoadmapSearch();
+    // queries search from both the start and the goal
+    private boolean bidirectional = false;
     
     /**
      * Constructor
@@ -34,26 +47,123 @@ public class PRMPlanner extends MotionPlanner {
         this.setup();
     }
     
+    /**
+     * Enable or disable the lazy roadmap. A lazy roadmap connects new vertices to their
+     * neighbors without collision checking; a query searches for a candidate path,
+     * validates only its edges, removes the invalid ones and searches again.
+     * @param lazy true to defer edge validation until query time
+     */
+    public void setLazy(boolean lazy) {
+        this.lazy = lazy;
+    }
+    
+    /**
+     * Check whether the roadmap is lazy
+     * @return true if edges are validated at query time
+     */
+    public boolean isLazy() {
+        return lazy;
+    }
+    
+    /**
+     * Choose how queries search the roadmap: forward from the start, or from the start
+     * and the goal at once, which expands fewer vertices when they are far apart. The
+     * backward half of the search is counted as BACKWARD_EXPANSIONS.
+     * @param bidirectional true to search from both ends
+     */
+    public void setBidirectional(boolean bidirectional) {
+        this.bidirectional = bidirectional;
+    }
+    
+    /**
+     * Check whether queries search from both ends
+     * @return true if the search is bidirectional
+     */
+    public boolean isBidirectional() {
+        return bidirectional;
+    }
+    
+    /**
+     * Query for a given pair of configurations with a given kind of search, leaving the
+     * kind of the other queries unchanged
+     * @param s              the start configuration
+     * @param g              the goal configuration
+     * @param bidirectional  true to search from both ends
+     * @return a valid path
+     */
+    public Trajectory query(Vector s, Vector g, boolean bidirectional) {
+        boolean previous = this.bidirectional;
+        this.bidirectional = bidirectional;
+        try {
+            return query(s, g);
+        } finally {
+            this.bidirectional = previous;
+        }
+    }
+    
+    /**
+     * Choose how new vertices are connected: to the kValue() nearest neighbors, or, as in
+     * PRM*, to every vertex within radius()
+     * @param optimal true to connect within the radius
+     */
+    public void setOptimal(boolean optimal) {
+        this.optimal = optimal;
+    }
+    
+    /**
+     * Check whether new vertices are connected within the PRM* radius
+     * @return true if the roadmap is PRM*
+     */
+    public boolean isOptimal() {
+        return optimal;
+    }
+    
+    /**
+     * Set the size of the blocks of a batched construction. growMap then generates a
+     * block of free samples, testing candidates in parallel, inserts the whole block,
+     * and finds the neighbors of its samples and validates their edges in parallel
+     * before adding the edges to the roadmap.
+     * @param batchSize  samples per block, or 0 to connect each sample as it is generated
+     */
+    public void setBatchSize(int batchSize) {
+        assert(batchSize >= 0);
+        this.batchSize = batchSize;
+    }
+    
+    /**
+     * Get the size of the blocks of a batched construction
+     * @return samples per block, or 0 if samples are connected one by one
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+    
     @Override
     public int getSize() {
         // YOU WILL WRITE THIS METHOD
     	// return number of nodes in graph
-    	return graph.size();
+    	return graph.getNumberOfVertices();
     }
 
     @Override
     protected void setup() {
         // YOU WILL WRITE THIS METHOD
     	// initialize graph
-        graph = new HashMap<Vector, HashMap<Vector, Double>>();
+        nodes = getConfigurationStore();
+        graph = new Roadmap();
         // add start and goal into graph
-        graph.put(getStart(), new HashMap<Vector, Double>());
-        graph.put(getGoal(), new HashMap<Vector, Double>());
+        addToGraph(getStart());
+        addToGraph(getGoal());
     	
     }
 
     @Override
     protected void growMap(int K) {
+        if (batchSize > 0) {
+            for (int i = 0; i < K; i += batchSize)
+                addBatch(generateFreeConfigurations(Math.min(batchSize, K - i)));
+            return;
+        }
         // YOU WILL WRITE THIS METHOD
     	// generate free configs and add them for K times
     	int i=0;
@@ -72,78 +182,163 @@ public class PRMPlanner extends MotionPlanner {
      * Add a free configuration to the roadmap
      * @param free  a free configuration
      */
-    @SuppressWarnings("boxing")
     private void addVertex(Vector free) {
         // YOU WILL WRITE THIS METHOD
-    	// get the K nearest neighbors and loop through them
-    	List<Vector> neighbors = nearestKNeighbors(graph.keySet(), free, this.kValue());
-    	for (Vector neighbor:neighbors) {
+    	// get the K nearest neighbors, or the neighbors within the radius for PRM*, and loop through them
+    	int[] neighbors = optimal ? nearNeighborIds(free, this.radius()) : nearestKNeighborIds(free, this.kValue());
+    	int id = addToGraph(free);
+    	if (lazy) {
+    	    addLazyVertex(id, neighbors);
+    	    return;
+    	}
+    	// a symmetric steering method takes the same path both ways, so one check suffices
+    	boolean symmetric = this.getRobot().isSteeringSymmetric();
+    	for (int neighbor:neighbors) {
     		// check that the new config is not the same as the neighbor
-    		if (!free.equals(neighbor)) {
+    		if (neighbor != id) {
+    			Vector configuration = nodes.get(neighbor);
     			// check a collision-free path exists from neighbor to free
-    			if (this.getEnvironment().isSteerable(this.getRobot(), neighbor, free, RESOLUTION)){
-    				// get the metric
-    				double metric = this.getRobot().getMetric(free, neighbor);
+    			boolean reachable = this.getEnvironment().isSteerable(this.getRobot(), configuration, free, RESOLUTION);
+    			if (reachable){
     				// add new config as vertex reachable by neighbor
-    				graph.get(neighbor).put(free, metric);
+    				graph.setEdge(neighbor, id, nodes.getMetric(this.getRobot(), neighbor, id));
+    				recordInsertion();
     			}
     			// check a collision-free path exists from new config to neighbor
-    			if (this.getEnvironment().isSteerable(this.getRobot(), free, neighbor, RESOLUTION)){
-    				// get the metric
-    				double metric = this.getRobot().getMetric(neighbor, free);
+    			if (symmetric ? reachable : this.getEnvironment().isSteerable(this.getRobot(), free, configuration, RESOLUTION)){
     				// add neighbor as vertex reachable by new config
-    				// if new config is not yet in the graph, add it
-    				if (!graph.containsKey(free)) {
-    					graph.put(free, new HashMap<Vector, Double>());
-    					graph.get(free).put(neighbor, metric);
-    				}
-    				// else new config is already in graph, add the edge
-    				else {
-    					graph.get(free).put(neighbor, metric);
-    				}
+    				graph.setEdge(id, neighbor, nodes.getMetric(this.getRobot(), id, neighbor));
+    				recordInsertion();
     			}
     		}
     	}
     }
     
-    /* improved version of addVertex
-     * cuts the number of calls to isSteerable() and thus
-     * isValidPath, isValidConfiguration, and getArea by 
-     * approximately half
+    /**
+     * Connect a vertex to its neighbors in both directions without checking the edges
+     * for collision
+     * @param free       the id of the vertex
+     * @param neighbors  the ids of its nearest neighbors
      */
-//    @SuppressWarnings("boxing")
-//    private void addVertex(Vector free) {
-//        // YOU WILL WRITE THIS METHOD
-//    	// get the K nearest neighbors and loop through them
-//    	List<Vector> neighbors = nearestKNeighbors(graph.keySet(), free, this.kValue());
-//    	for (Vector neighbor:neighbors) {
-//    		// check that the new config is not the same as the neighbor
-//    		if (!free.equals(neighbor)) {
-//    			// check a collision-free path exists from neighbor to free
-//    			if (this.getEnvironment().isSteerable(this.getRobot(), neighbor, free, RESOLUTION)){
-//    				// get the metric
-//    				double metric = this.getRobot().getMetric(free, neighbor);
-//    				// add new config as vertex reachable by neighbor
-//    				graph.get(neighbor).put(free, metric);
-//    				// add neighbor as reachable by new config
-//    				if (!graph.containsKey(free)) {
-//    					graph.put(free, new HashMap<Vector, Double>());
-//    					graph.get(free).put(neighbor, metric);
-//    				}
-//    				// else new config is already in graph, add the edge
-//    				else {
-//    					graph.get(free).put(neighbor, metric);
-//    				}
-//    			}
-//    		}
-//    	}
-//    }
-
+    private void addLazyVertex(int free, int[] neighbors) {
+        for (int neighbor : neighbors) {
+            if (neighbor == free)
+                continue;
+            graph.setEdge(neighbor, free, nodes.getMetric(getRobot(), neighbor, free));
+            graph.setEdge(free, neighbor, nodes.getMetric(getRobot(), free, neighbor));
+            recordInsertion();
+            recordInsertion();
+        }
+    }
+    
+    /**
+     * Add a block of free configurations to the roadmap. The block is inserted first, so
+     * its samples find each other as neighbors; an edge between two samples of the block
+     * is validated once, for the later of the two.
+     * @param block  free configurations
+     */
+    private void addBatch(List<Vector> block) {
+        // the new vertices get consecutive ids from first on
+        int first = nodes.size();
+        for (Vector free : block)
+            addToGraph(free);
+        int count = nodes.size() - first;
+        Vector[] added = new Vector[count];
+        for (int i = 0; i < count; ++i)
+            added[i] = nodes.get(first + i);
+        // every sample is now indexed and finds itself, so ask for one more neighbor
+        double radius = optimal ? radius() : 0.0;
+        int k = kValue() + 1;
+        List<int[]> found = IntStream.range(0, count).parallel()
+                .mapToObj(i -> optimal ? nearNeighborIds(added[i], radius) : nearestKNeighborIds(added[i], k))
+                .collect(Collectors.toList());
+        // drop each sample itself, and a sample of the block that lists this one in turn
+        // unless this one is the later of the two
+        List<int[]> neighbors = IntStream.range(0, count).parallel()
+                .mapToObj(i -> Arrays.stream(found.get(i)).filter(v -> {
+                    int j = v - first;
+                    return j < i || (j > i && !contains(found.get(j), first + i));
+                }).toArray())
+                .collect(Collectors.toList());
+        if (lazy) {
+            for (int i = 0; i < count; ++i)
+                addLazyVertex(first + i, neighbors.get(i));
+            return;
+        }
+        // validate the edges to and from the neighbors of every sample in parallel
+        boolean symmetric = getRobot().isSteeringSymmetric();
+        List<boolean[]> valid = IntStream.range(0, count).parallel()
+                .mapToObj(i -> {
+                    Vector free = added[i];
+                    int[] list = neighbors.get(i);
+                    boolean[] result = new boolean[2 * list.length];
+                    for (int j = 0; j < list.length; ++j) {
+                        Vector neighbor = nodes.get(list[j]);
+                        result[2 * j] = getEnvironment().isSteerable(getRobot(), neighbor, free, RESOLUTION);
+                        result[2 * j + 1] = symmetric ? result[2 * j] : getEnvironment().isSteerable(getRobot(), free, neighbor, RESOLUTION);
+                    }
+                    return result;
+                })
+                .collect(Collectors.toList());
+        for (int i = 0; i < count; ++i) {
+            int free = first + i;
+            int[] list = neighbors.get(i);
+            boolean[] result = valid.get(i);
+            for (int j = 0; j < list.length; ++j) {
+                int neighbor = list[j];
+                if (result[2 * j]) {
+                    graph.setEdge(neighbor, free, nodes.getMetric(getRobot(), neighbor, free));
+                    recordInsertion();
+                }
+                if (result[2 * j + 1]) {
+                    graph.setEdge(free, neighbor, nodes.getMetric(getRobot(), free, neighbor));
+                    recordInsertion();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Check whether an array holds a value
+     * @param values  the array
+     * @param value   the value
+     * @return true if the value is in the array
+     */
+    private static boolean contains(int[] values, int value) {
+        for (int v : values)
+            if (v == value)
+                return true;
+        return false;
+    }
+    
+    /**
+     * Add a vertex without edges to the graph and to the nearest neighbor index, unless
+     * it is there already. Vertices are indexed in the order of their ids, so the ids the
+     * index returns are vertex ids.
+     * @param v  the configuration
+     * @return the id of the vertex, or -1 if v is null
+     */
+    private int addToGraph(Vector v) {
+        if (v == null)
+            return -1;
+        int id = nodes.find(v);
+        if (id < 0) {
+            id = nodes.add(v);
+            graph.addVertex();
+            addToIndex();
+            recordInsertion();
+        }
+        return id;
+    }
+    
     @Override
     protected void reset() {
         // YOU WILL WRITE THIS METHOD
     	// clear the data structure
+    	nodes.clear();
     	graph.clear();
+    	checked.clear();
+    	clearIndex();
     }   
     
     /**
@@ -156,6 +351,30 @@ public class PRMPlanner extends MotionPlanner {
         return findPath();
     }
     
+    /**
+     * Generate free configurations, drawing candidates in rounds and testing each round
+     * in parallel
+     * @param n  the number of free configurations
+     * @return n free configurations
+     */
+    private List<Vector> generateFreeConfigurations(int n) {
+        List<Vector> result = new ArrayList<>(n);
+        while (result.size() < n) {
+            List<Vector> candidates = new ArrayList<>(n - result.size());
+            for (int i = result.size(); i < n; ++i) {
+                candidates.add(getRobot().getRandomConfiguration(getEnvironment(), random));
+                incrementSampleNumber();
+            }
+            candidates.parallelStream()
+                    .filter(q -> getEnvironment().isValidConfiguration(getRobot(), q))
+                    .forEachOrdered(q -> {
+                        result.add(q);
+                        incrementFreeSampleNumber();
+                    });
+        }
+        return result;
+    }
+    
     /**
      * Generate a free configuration
      * @return a free configuration if possible, and null otherwise
@@ -168,8 +387,10 @@ public class PRMPlanner extends MotionPlanner {
     	while (attempts<numberOfAttempts) {
     		// get a random configuration for robot in environment
     		Vector rand = this.getRobot().getRandomConfiguration(this.getEnvironment(), random);
+    		incrementSampleNumber();
     		// if configuration is collision free, return it
     		if (this.getEnvironment().isValidConfiguration(this.getRobot(), rand)){
+    			incrementFreeSampleNumber();
     			return rand;
     		}
     		// increment num of attempts
@@ -194,6 +415,23 @@ public class PRMPlanner extends MotionPlanner {
         return 15; // Magic number suggested in Steven M. LaValle's "Planning Algorithms"
     }
     
+    /**
+     * The radius within which PRM* connects a new vertex, 
+     * gamma * (log(n) / n)^(1/d) for n vertices in dimension d, where
+     * gamma > 2 * (1 + 1/d)^(1/d) * (volume of the free space / volume of the unit ball)^(1/d)
+     * as shown in the paper cited above. The free space is estimated from the fraction
+     * of random samples that were free.
+     * @return the connection radius
+     */
+    private double radius() {
+        int d = this.getRobot().getDimension();
+        double n = Math.max(this.getSize(), 2);
+        double rate = this.getFreeSampleRate();
+        double free = this.getRobot().getVolume(this.getEnvironment()) * (!Double.isNaN(rate) && rate > 0 ? rate : 1.0);
+        double gamma = GAMMA_MARGIN * 2.0 * Math.pow((1.0 + 1.0 / d) * free / this.getRobot().getUnitBallVolume(), 1.0 / d);
+        return gamma * Math.pow(Math.log(n) / n, 1.0 / d);
+    }
+    
     /**
      * Determine whether this edge connecting two configurations can be ignored.
      * The following paper describes a way to ignore some edges while maintaining
@@ -212,154 +450,92 @@ public class PRMPlanner extends MotionPlanner {
     
     @Override
     protected Trajectory findPath() {
-        List<Vector> path = aStar(getStart(), getGoal());
+        int start = nodes.find(getStart()), goal = nodes.find(getGoal());
+        if (start < 0 || goal < 0)
+            return null;
+        int[] path = lazy ? lazyAStar(start, goal) : aStar(start, goal);
         return path != null ? convertToTrajectory(path) : null; 
     }
     
     /**
-     * Convert a list of configurations to a corresponding trajectory based on the steering method
-     * @param path a list of configurations
-     * @return a trajectory
+     * Search the lazy roadmap: find a candidate path, validate its unchecked edges from
+     * the longest (most likely to collide) to the shortest, remove the first invalid
+     * edge and search again, until a path has only valid edges
+     * @param start  the id of the start configuration
+     * @param goal   the id of the goal configuration
+     * @return the ids along a valid path, or null if there is none in the roadmap
      */
-    private Trajectory convertToTrajectory(List<Vector> path) {
-        Trajectory result = new Trajectory();
-        Vector previous = path.get(0);
-        for (int i = 1; i < path.size(); ++i) {
-            Vector next = path.get(i);
-            result.append(getRobot().steer(previous, next));
-            previous = next;
-        }
-        return result;
-    }
-    
-    /**
-     * Astar search
-     * @return a path
-     */
-    // this is the A* search that is provided as part of the assignment
     @SuppressWarnings("boxing")
-    private List<Vector> aStar(Vector start, Vector goal) {
-    	
-    	System.out.println("Start "+start);
-    	System.out.println("Goal "+goal);
-    	
-        NavigableSet<Node> pq = new TreeSet<>();
-        Map<Vector, Node> map = new HashMap<>();
-        Node root = new Node(start, null, 0, getRobot().getMetric(start, goal));
-        pq.add(root);
-        map.put(start, root);
-        while (!pq.isEmpty()) {
-            Node node = pq.pollFirst();
-            Vector configuration = node.getConfiguration();
-            double cost = node.getCost();
-            if (goal.equals(configuration)) {
-                return backChain(node);
-            }
-            for (Vector config : getSuccessors(configuration)){
-                double heuristic = getRobot().getMetric(config, goal);
-                // new cost should be sum of current cost and weight of edge from current
-                // node to the config in successors
-                double newCost = graph.get(configuration).get(config)+cost; // YOU NEED TO MODIFY THIS LINE
-                Node test = map.get(config);
-                
-                if (test != null) {
-                    if (test.getPriority() > newCost + heuristic)
-                        pq.remove(test);
-                    else
-                        continue;
+    private int[] lazyAStar(int start, int goal) {
+        while (true) {
+            int[] path = aStar(start, goal);
+            if (path == null)
+                return null;
+            List<Integer> order = new ArrayList<>();
+            for (int i = 0; i + 1 < path.length; ++i)
+                order.add(i);
+            order.sort((a, b) -> Double.compare(graph.getWeight(path[b], path[b + 1]),
+                                                graph.getWeight(path[a], path[a + 1])));
+            boolean valid = true;
+            for (int i : order) {
+                int from = path[i], to = path[i + 1];
+                if (checked.contains(edgeKey(from, to)))
+                    continue;
+                boolean symmetric = getRobot().isSteeringSymmetric();
+                if (!getEnvironment().isSteerable(getRobot(), nodes.get(from), nodes.get(to), RESOLUTION)) {
+                    graph.removeEdge(from, to);
+                    if (symmetric)
+                        graph.removeEdge(to, from);
+                    valid = false;
+                    break;
                 }
-                Node newNode = new Node(config, node, newCost, heuristic);
-                map.put(config, newNode);
-                pq.add(newNode);
+                checked.add(edgeKey(from, to));
+                if (symmetric)
+                    checked.add(edgeKey(to, from));
             }
+            if (valid)
+                return path;
         }
-        return null;
     }
     
     /**
-     * Get successors for a configuration
-     * @param configuration
-     * @return a collection of successors
+     * Pack an edge into one key
+     * @param from  the id of the source
+     * @param to    the id of the target
+     * @return the key
      */
-    private Collection<Vector> getSuccessors(Vector configuration) {
-        // YOU WILL WRITE THIS METHOD
-    	// we return the vectors to which the config is connected
-    	// need to make sure config is actually in the graph
-    	if (graph.containsKey(configuration))
-    		return graph.get(configuration).keySet();
-    	return new HashSet<Vector>();
+    private static long edgeKey(int from, int to) {
+        return ((long)from << 32) | (to & 0xffffffffL);
     }
     
     /**
-     * Backchain to construct a path
-     * @param node the end node
-     * @return a path
+     * Convert a path of vertices to a corresponding trajectory based on the steering method
+     * @param path the ids of the vertices
+     * @return a trajectory
      */
-    private static List<Vector> backChain(Node node) {
-        LinkedList<Vector> result = new LinkedList<>();
-        for (Node current = node; current != null; current = current.getParent()) {
-            result.addFirst(current.getConfiguration());
+    private Trajectory convertToTrajectory(int[] path) {
+        Trajectory result = new Trajectory();
+        Vector previous = nodes.get(path[0]);
+        for (int i = 1; i < path.length; ++i) {
+            Vector next = nodes.get(path[i]);
+            result.append(steer(previous, next));
+            previous = next;
         }
         return result;
     }
     
-    final class Node implements Comparable<Node> {
-        private Vector configuration;
-        private Node parent;
-        private double heuristic;
-        private double cost;
-        
-        public Node(Vector config, Node p, double cost, double heuristic) {
-            this.configuration = config;
-            this.parent = p;
-            this.heuristic = heuristic;
-            this.cost = cost;
-        }
-        
-        @Override
-        public int compareTo(Node o) {
-            int comparison = Double.compare(getPriority(), o.getPriority());
-            return comparison == 0 ? configuration.compareTo(o.getConfiguration()) : comparison;
-        }
-        
-        /**
-         * Get the parent
-         * @return the parent
-         */
-        public Node getParent(){
-            return parent;
-        }
-        
-        /**
-         * Get the configuration
-         * @return the configuration
-         */
-        public Vector getConfiguration() {
-            return configuration;
-        }
-        
-        /**
-         * Get the cost
-         * @return the cost
-         */
-        public double getCost() {
-            return cost;
-        }
-        
-        /**
-         * Get the heuristic
-         * @return the heuristic
-         */
-        public double getHeuristic() {
-            return heuristic;
-        }
-        
-        /**
-         * Get the priority 
-         * @return the priority
-         */
-        public double getPriority(){
-            return getCost() + getHeuristic();
-        }
+    /**
+     * Astar search
+     * @return a path
+     */
+    // this is the A* search that is provided as part of the assignment
+    private int[] aStar(int start, int goal) {
+        int[] path = bidirectional
+                ? search.bidirectionalAStar(graph, start, goal, v -> nodes.getMetric(getRobot(), v, goal),
+                                            v -> nodes.getMetric(getRobot(), start, v))
+                : search.aStar(graph, start, goal, v -> nodes.getMetric(getRobot(), v, goal));
+        recordExpansions(search.getExpansions());
+        recordBackwardExpansions(search.getBackwardExpansions());
+        return path;
     }
 }
@@ -21,6 +21,8 @@ public class PlanarRobot extends Robot {
     private static final double WEIGHT_FOR_ANGLE = 1.0;
     private Shape shape;
     private List<Vector> controls;
+    private double circumscribedRadius;  // radius of the smallest disk around the origin containing the shape
+    private double inscribedRadius;      // radius of the largest disk around the origin inside the shape
     
     /**
      * Constructor
@@ -30,6 +32,17 @@ public class PlanarRobot extends Robot {
     private PlanarRobot(Shape s, Vector... us) {
         this.shape = s;
         controls = Collections.unmodifiableList(Arrays.asList(us));
+        for (double[] piece : CollisionKernel.decompose(s.getPathIterator(null))) {
+            double inside = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < piece.length; i += 2) {
+                circumscribedRadius = Math.max(circumscribedRadius, Math.hypot(piece[i], piece[i + 1]));
+                int j = (i + 2) % piece.length;
+                double ex = piece[j] - piece[i], ey = piece[j + 1] - piece[i + 1];
+                // signed distance from the origin to the edge's line, positive on the inner side
+                inside = Math.min(inside, (ex * -piece[i + 1] + ey * piece[i]) / Math.hypot(ex, ey));
+            }
+            inscribedRadius = Math.max(inscribedRadius, inside);
+        }
     }
     
     /**
@@ -64,6 +77,34 @@ public class PlanarRobot extends Robot {
         return OMNI;
     }
     
+    /**
+     * Get the radius of the smallest disk around the reference point containing the robot
+     * @return the circumscribed radius
+     */
+    public double getCircumscribedRadius() {
+        return circumscribedRadius;
+    }
+    
+    /**
+     * Get the radius of the largest disk around the reference point inside the robot
+     * @return the inscribed radius, or 0 if the reference point is outside the robot
+     */
+    public double getInscribedRadius() {
+        return inscribedRadius;
+    }
+    
+    @Override
+    public double getMaxSpeed(Vector control) {
+        assert(control.getDimension() == getDimension());
+        return getMaxSpeed(control.values());
+    }
+    
+    @Override
+    public double getMaxSpeed(double[] control) {
+        // a point at distance r from the reference point moves at most |v| + |omega| r
+        return Math.hypot(control[0], control[1]) + Math.abs(control[2]) * circumscribedRadius;
+    }
+    
     @Override
     public List<Vector> getControls() {
         return controls;
@@ -80,6 +121,14 @@ public class PlanarRobot extends Robot {
         return Collections.singletonList(configuration);
     }
     
+    @Override
+    public void getTransformation(double[] configuration, double[] transforms) {
+        assert(configuration.length == getDimension());
+        transforms[0] = configuration[0];
+        transforms[1] = configuration[1];
+        transforms[2] = configuration[2];
+    }
+    
     @Override
     public int getDimension() {
         return DIMENSION;
@@ -89,9 +138,45 @@ public class PlanarRobot extends Robot {
     public double getMetric(Vector q1, Vector q2) {
         assert(q1.getDimension() == getDimension());
         assert(q2.getDimension() == getDimension());
+        return getMetric(q1.values(), 0, q2.values(), 0);
+    }
+    
+    @Override
+    public double getMetric(double[] q1, int offset1, double[] q2, int offset2) {
         // Math.hypot is slower but more accurate than Math.sqrt
-        double distance = Math.hypot(q1.get(0) - q2.get(0), q1.get(1) - q2.get(1));
-        return Math.max(distance, WEIGHT_FOR_ANGLE * Robot.getAbsDiff(q1.get(2), q2.get(2)));
+        double distance = Math.hypot(q1[offset1] - q2[offset2], q1[offset1 + 1] - q2[offset2 + 1]);
+        return Math.max(distance, WEIGHT_FOR_ANGLE * Robot.getAbsDiff(q1[offset1 + 2], q2[offset2 + 2]));
+    }
+    
+    @Override
+    public double getVolume(Environment environment) {
+        Rectangle bound = environment.getBounds();
+        return bound.getWidth() * bound.getHeight() * 2.0 * Math.PI;
+    }
+    
+    @Override
+    public double getUnitBallVolume() {
+        // a unit disk in the plane times the headings within 1 / WEIGHT_FOR_ANGLE on either side
+        return Math.PI * 2.0 / WEIGHT_FOR_ANGLE;
+    }
+    
+    @Override
+    public NearestNeighbors createNearestNeighbors(ConfigurationStore store) {
+        return new SE2KDTree(this, WEIGHT_FOR_ANGLE, store);
+    }
+    
+    @Override
+    public int getEmbeddingDimension() {
+        return DIMENSION + 1;
+    }
+    
+    @Override
+    public void embed(Vector configuration, double[] result) {
+        // the heading goes to a circle of radius WEIGHT_FOR_ANGLE, where the chord follows the weighted angle difference
+        result[0] = configuration.get(0);
+        result[1] = configuration.get(1);
+        result[2] = WEIGHT_FOR_ANGLE * Math.cos(configuration.get(2));
+        result[3] = WEIGHT_FOR_ANGLE * Math.sin(configuration.get(2));
     }
     
     @Override
@@ -126,6 +211,24 @@ public class PlanarRobot extends Robot {
         return new Transformation(configuration).move(control, duration).toConfiguration();
     }
     
+    @Override
+    public void move(double[] configuration, double[] control, double duration, double[] result) {
+        assert(configuration.length == getDimension());
+        assert(control.length == getDimension());
+        // same arithmetic as new Transformation(configuration).move(control, duration)
+        double x = configuration[0], y = configuration[1];
+        double sin = Math.sin(configuration[2]), cos = Math.cos(configuration[2]);
+        double vx = control[0], vy = control[1], omega = control[2];
+        double theta = omega * duration;
+        double sinc = Transformation.sinc(theta), verc = Transformation.verc(theta);
+        double dx = duration * (vx * sinc - vy * verc);
+        double dy = duration * (vx * verc + vy * sinc);
+        double dSin = Math.sin(theta), dCos = Math.cos(theta);
+        result[0] = cos * dx - sin * dy + x;
+        result[1] = sin * dx + cos * dy + y;
+        result[2] = normalize(Math.atan2(sin * dCos + cos * dSin, cos * dCos - sin * dSin));
+    }
+    
     private static final Vector[] DUBINS_CONTROLS = new Vector[] { new Vector(1, 0, 0), 
                                                                    new Vector(1, 0, 1),
                                                                    new Vector(1, 0, -1)};
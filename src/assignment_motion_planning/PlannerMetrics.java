@@ -0,0 +1,283 @@
+package assignment_motion_planning;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe counters and latency histograms for the operations of a motion planner,
+ * broken down by the phase the planner is in when they happen. Events may be recorded
+ * from any thread; the phase is set by the planner. Every planner has its own metrics,
+ * so planners sharing an environment do not mix their counts or phases; events are also
+ * added to an optional parent, such as the environment's metrics, under its own phase.
+ */
+public class PlannerMetrics {
+    private static final int BUCKETS = 64;  // bucket i holds latencies in [2^(i-1), 2^i) nanoseconds
+
+    /**
+     * Phases of a planner
+     */
+    public enum Phase {
+        IDLE,   // outside of any planner call
+        SETUP,  // resetting and initializing the data structures
+        GROW,   // growing the data structures
+        QUERY   // answering a query
+    }
+
+    /**
+     * Operations that are counted
+     */
+    public enum Counter {
+        COLLISION_CHECKS,         // configurations tested against the obstacles
+        MOTION_VALIDATIONS,       // trajectories tested against the obstacles
+        NEAREST_NEIGHBOR_QUERIES, // nearest neighbor searches
+        STEER_CALLS,              // calls to the steering method
+        GRAPH_INSERTIONS,         // vertices and edges added to a roadmap or tree
+        SEARCH_EXPANSIONS,        // nodes expanded by a graph search, forward if it is bidirectional
+        BACKWARD_EXPANSIONS       // nodes expanded backward from the goal by a bidirectional search
+    }
+
+    private static final int PHASES = Phase.values().length;
+    private static final int COUNTERS = Counter.values().length;
+    private final LongAdder[] counts = new LongAdder[PHASES * COUNTERS];
+    private final LongAdder[] times = new LongAdder[PHASES * COUNTERS];
+    private final LongAdder[] histograms = new LongAdder[PHASES * COUNTERS * BUCKETS];
+    private final LongAdder[] phaseTimes = new LongAdder[PHASES];
+    private final PlannerMetrics parent;  // also counts the events, or null
+    private volatile Phase phase = Phase.IDLE;
+    private long phaseStart = System.nanoTime();
+
+    /**
+     * Constructor
+     */
+    public PlannerMetrics() {
+        this(null);
+    }
+
+    /**
+     * Constructor
+     * @param parent metrics that also count the events recorded here, or null
+     */
+    public PlannerMetrics(PlannerMetrics parent) {
+        this.parent = parent;
+        for (int i = 0; i < counts.length; ++i) {
+            counts[i] = new LongAdder();
+            times[i] = new LongAdder();
+        }
+        for (int i = 0; i < histograms.length; ++i)
+            histograms[i] = new LongAdder();
+        for (int i = 0; i < PHASES; ++i)
+            phaseTimes[i] = new LongAdder();
+    }
+
+    /**
+     * Enter a phase; events recorded from now on are attributed to it
+     * @param p the new phase
+     * @return the previous phase, to be restored when the new one ends
+     */
+    public synchronized Phase enter(Phase p) {
+        assert(p != null);
+        long now = System.nanoTime();
+        Phase previous = phase;
+        phaseTimes[previous.ordinal()].add(now - phaseStart);
+        phaseStart = now;
+        phase = p;
+        return previous;
+    }
+
+    /**
+     * Get the current phase
+     * @return the phase
+     */
+    public Phase getPhase() {
+        return phase;
+    }
+
+    /**
+     * Count one event without timing it
+     * @param counter the kind of event
+     */
+    public void increment(Counter counter) {
+        counts[index(phase, counter)].increment();
+        if (parent != null)
+            parent.increment(counter);
+    }
+
+    /**
+     * Count several events without timing them
+     * @param counter  the kind of event
+     * @param n        the number of events
+     */
+    public void add(Counter counter, long n) {
+        counts[index(phase, counter)].add(n);
+        if (parent != null)
+            parent.add(counter, n);
+    }
+
+    /**
+     * Count one event that started at a given time and ended now
+     * @param counter    the kind of event
+     * @param startTime  the value of System.nanoTime() when the event started
+     */
+    public void record(Counter counter, long startTime) {
+        long nanos = System.nanoTime() - startTime;
+        for (PlannerMetrics m = this; m != null; m = m.parent) {
+            int i = index(m.phase, counter);
+            m.counts[i].increment();
+            m.times[i].add(nanos);
+            m.histograms[i * BUCKETS + bucket(nanos)].increment();
+        }
+    }
+
+    /**
+     * Get the number of events of a kind over all phases
+     * @param counter the kind of event
+     * @return the number of events
+     */
+    public long getTotal(Counter counter) {
+        long result = 0;
+        for (Phase p : Phase.values())
+            result += counts[index(p, counter)].sum();
+        return result;
+    }
+
+    /**
+     * Clear all counters and histograms
+     */
+    public synchronized void reset() {
+        for (LongAdder adder : counts)
+            adder.reset();
+        for (LongAdder adder : times)
+            adder.reset();
+        for (LongAdder adder : histograms)
+            adder.reset();
+        for (LongAdder adder : phaseTimes)
+            adder.reset();
+        phaseStart = System.nanoTime();
+    }
+
+    /**
+     * Take a consistent-enough copy of the current values; events recorded concurrently
+     * may or may not be included
+     * @return the snapshot
+     */
+    public synchronized Snapshot snapshot() {
+        long[] c = new long[counts.length], t = new long[times.length], h = new long[histograms.length];
+        long[] p = new long[PHASES];
+        for (int i = 0; i < c.length; ++i) {
+            c[i] = counts[i].sum();
+            t[i] = times[i].sum();
+        }
+        for (int i = 0; i < h.length; ++i)
+            h[i] = histograms[i].sum();
+        for (int i = 0; i < PHASES; ++i)
+            p[i] = phaseTimes[i].sum();
+        p[phase.ordinal()] += System.nanoTime() - phaseStart;
+        return new Snapshot(c, t, h, p);
+    }
+
+    private static int index(Phase p, Counter counter) {
+        return p.ordinal() * COUNTERS + counter.ordinal();
+    }
+
+    private static int bucket(long nanos) {
+        return nanos <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+    }
+
+    /**
+     * Immutable copy of the metrics
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long[] times;
+        private final long[] histograms;
+        private final long[] phaseTimes;
+
+        private Snapshot(long[] counts, long[] times, long[] histograms, long[] phaseTimes) {
+            this.counts = counts;
+            this.times = times;
+            this.histograms = histograms;
+            this.phaseTimes = phaseTimes;
+        }
+
+        /**
+         * Get the number of events of a kind in a phase
+         * @param p        the phase
+         * @param counter  the kind of event
+         * @return the number of events
+         */
+        public long getCount(Phase p, Counter counter) {
+            return counts[index(p, counter)];
+        }
+
+        /**
+         * Get the total time spent in timed events of a kind in a phase
+         * @param p        the phase
+         * @param counter  the kind of event
+         * @return the time in nanoseconds
+         */
+        public long getTime(Phase p, Counter counter) {
+            return times[index(p, counter)];
+        }
+
+        /**
+         * Get the wall-clock time spent in a phase
+         * @param p the phase
+         * @return the time in nanoseconds
+         */
+        public long getPhaseTime(Phase p) {
+            return phaseTimes[p.ordinal()];
+        }
+
+        /**
+         * Estimate a latency percentile of timed events of a kind in a phase
+         * @param p          the phase
+         * @param counter    the kind of event
+         * @param fraction   the percentile as a fraction in [0, 1]
+         * @return an upper bound on the percentile in nanoseconds (the top of its
+         *         power-of-two bucket), or 0 if there are no timed events
+         */
+        public long getPercentile(Phase p, Counter counter, double fraction) {
+            assert(fraction >= 0.0 && fraction <= 1.0);
+            int offset = index(p, counter) * BUCKETS;
+            long total = 0;
+            for (int b = 0; b < BUCKETS; ++b)
+                total += histograms[offset + b];
+            if (total == 0)
+                return 0;
+            long rank = (long)Math.ceil(fraction * total), seen = 0;
+            for (int b = 0; b < BUCKETS; ++b) {
+                seen += histograms[offset + b];
+                if (seen >= rank && seen > 0)
+                    return b == 0 ? 0 : b >= 63 ? Long.MAX_VALUE : 1L << b;
+            }
+            return Long.MAX_VALUE;
+        }
+
+        /**
+         * Table of all non-zero counters by phase
+         */
+        @SuppressWarnings("boxing")
+        @Override
+        public String toString() {
+            StringBuilder result = new StringBuilder("Planner metrics:");
+            for (Phase p : Phase.values()) {
+                boolean any = false;
+                for (Counter counter : Counter.values())
+                    any |= getCount(p, counter) > 0;
+                if (!any)
+                    continue;
+                result.append(String.format("%n  %s (%.3f s)", p, getPhaseTime(p) / 1e9));
+                for (Counter counter : Counter.values()) {
+                    long count = getCount(p, counter);
+                    if (count == 0)
+                        continue;
+                    result.append(String.format("%n    %-25s %10d", counter, count));
+                    if (getTime(p, counter) > 0)
+                        result.append(String.format("  total %.3f s, mean %.1f us, p50 < %.1f us, p99 < %.1f us",
+                                getTime(p, counter) / 1e9, getTime(p, counter) / 1e3 / count,
+                                getPercentile(p, counter, 0.5) / 1e3, getPercentile(p, counter, 0.99) / 1e3));
+                }
+            }
+            return result.toString();
+        }
+    }
+}
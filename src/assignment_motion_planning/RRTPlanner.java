@@ -10,9 +10,8 @@ package assignment_motion_planning;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Deque;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -25,46 +24,27 @@ import javafx.util.Pair;
 public class RRTPlanner extends MotionPlanner {
     private static final double DEFAULT_DELTA = 0.1;  // Duration for the control
     
-    // representation of a tree
-    private HashMap<Vector, Edge> parents;
+    // configurations of the tree, addressed by id; the store the index searches
+    private ConfigurationStore nodes;
+    // representation of a tree: parent id (-1 for the root), control and duration of the
+    // motion from the parent, for each node by id
+    private int[] parents = new int[16];
+    private int[] controls = new int[16];
+    private double[] durations = new double[16];
+    // the robot's control set that controls index, or null if its controls are continuous
+    private List<Vector> controlSet;
+    // for continuous controls, the control of each node, controlDimension values per node
+    private double[] controlValues = new double[0];
+    private int controlDimension;
     // option for random delta
     private boolean randDelta;
     // number of nearest neighbors
     private int k;
+    // ids of the nearest neighbors of the last random configuration
+    private int[] near;
     // option for goal bias
     private boolean goalBias;
     
-    private class Edge {
-    	private Vector parent;
-    	private Vector control;
-    	private double duration;
-    	/** 
-    	 * Constructor
-    	 * @param p	configuration of the parent
-    	 * @param c	control, part of motion to get here
-    	 * @param d	duration, part of motion to get here
-    	 */
-    	public Edge(Vector p, Vector c, double d) {
-    		parent = p;
-    		control = c;
-    		duration = d;
-    	}
-    	// some getter methods
-    	public Vector getParentConfig() {
-    		return parent;
-    	}
-    	
-    	public Vector getControl() {
-    		return control;
-    	}
-    	
-    	public double getDuration() {
-    		return duration;
-    	}
-    	
-    	
-    }
-    
     /**
      * Constructor 
      * @param environment the workspace
@@ -74,6 +54,7 @@ public class RRTPlanner extends MotionPlanner {
         super(environment, robot);
         this.setup();
         this.k = k;
+        this.near = new int[k];
         this.randDelta = randDelta;  
         this.goalBias = goalBias;
     }
@@ -83,37 +64,40 @@ public class RRTPlanner extends MotionPlanner {
         // YOU WILL WRITE THIS METHOD
     	// list to store pairs
     	List<Pair<Point2D, Point2D>> list = new ArrayList<Pair<Point2D, Point2D>>();
-    	// iterate through nodes in tree
-    	for (Vector v:parents.keySet()) {
-    		// get parent
-    		Vector p = parents.get(v).getParentConfig();
-    		// only draw edges if parent isn't null
-    		if (p!=null) {
-    			// create a pair of x,y coordinates
-    			Point2D child = new Point2D(v.get(0), v.get(1));
-    			Point2D parent = new Point2D(p.get(0), p.get(1));
-    			Pair edge = new Pair(parent, child);
-    			// add to list
-    			list.add(edge);
-    		}
-    	}
+    	// create a pair of x,y coordinates for each edge and add it to the list
+    	forEachEdge((x1, y1, x2, y2) -> list.add(new Pair<>(new Point2D(x1, y1), new Point2D(x2, y2))));
         return list;
     }
     
+    @Override
+    public void forEachEdge(EdgeVisitor visitor) {
+    	// iterate through nodes in tree, skipping the root, which has no parent
+    	for (int v = 0; v < nodes.size(); ++v) {
+    		int p = parents[v];
+    		if (p>=0)
+    			visitor.visit(nodes.get(p, 0), nodes.get(p, 1), nodes.get(v, 0), nodes.get(v, 1));
+    	}
+    }
+    
     @Override
     public int getSize() {
         // YOU WILL WRITE THIS METHOD
     	// return number of nodes in tree
-        return parents.size();
+        return nodes.size();
     }
 
     @Override
     protected void setup() {
         // YOU WILL WRITE THIS METHOD
     	// initialize the tree
-    	parents = new HashMap<Vector, Edge>();
+    	nodes = getConfigurationStore();
+    	controlSet = getRobot().getControls();
     	// add start config; there is no parent
-    	parents.put(getStart(), new Edge(null, null, 0));
+    	if (getStart() != null) {
+    		nodes.add(getStart());
+    		addNode(-1, null, 0);
+    		addToIndex();
+    	}
     }
     
     @Override
@@ -129,8 +113,9 @@ public class RRTPlanner extends MotionPlanner {
     			rand = this.getGoal();
     		}
     		// get nearest neighbor(s)
-    		List<Vector> kNear = nearestKNeighbors(parents.keySet(), rand, k);
-    		for (Vector qnear:kNear) {
+    		int count = nearestKNeighborIds(rand, k, near);
+    		for (int j=0; j<count; j++) {
+    			int qnear = near[j];
     			// use newConf to add this nearest neighbor
     			if (randDelta) {
         			// random number between 0.05 and 0.2
@@ -147,73 +132,92 @@ public class RRTPlanner extends MotionPlanner {
     
     /**
      * Generate a new configuration from a configuration and insert it
-     * @param qnear    the beginning configuration of the random motion
+     * @param qnear    the id of the beginning configuration of the random motion
      * @param duration the duration of the random motion
      * @return true if one new configuration is inserted, and false otherwise
      */
-    @SuppressWarnings("boxing")
-    private boolean newConf(Vector qnear, double duration) {
+    private boolean newConf(int qnear, double duration) {
         // YOU WILL WRITE THIS METHOD
     	// get a random control
     	Vector control = this.getRobot().getRandomControl(random);
     	// make sure it's collision free
     	Trajectory trajectory = new Trajectory(control, duration);
-    	if (this.getEnvironment().isValidMotion(this.getRobot(), qnear, trajectory, RESOLUTION)) {
+    	Vector begin = nodes.get(qnear);
+    	if (this.getEnvironment().isValidMotion(this.getRobot(), begin, trajectory, RESOLUTION)) {
     		// get the actual new configuration
-    		Vector newConfig = this.getRobot().move(qnear, control, duration);
-    		// if configuration is not duplicate add to tree
-    		if(!parents.containsKey(newConfig)) {
-    			parents.put(newConfig, new Edge(qnear, control, duration));
+    		Vector newConfig = this.getRobot().move(begin, control, duration);
+    		// if configuration is not duplicate add to tree; nodes are indexed in the order of their ids
+    		if(nodes.find(newConfig) < 0) {
+    			nodes.add(newConfig);
+    			addNode(qnear, control, duration);
+    			addToIndex();
+    			recordInsertion();
     			return true;
     		}
     	}
         return false;
     }
-    /* improved version
-     * should reduce calls to isValidMotion and thus
-     * isValidConfiguration
+    
+    /**
+     * Record the motion to the node just added to the store
+     * @param parent    the id of its parent, or -1 for the root
+     * @param control   the control from the parent, or null for the root
+     * @param duration  the duration of the control
      */
-//    @SuppressWarnings("boxing")
-//    private boolean newConf(Vector qnear, double duration) {
-//        // YOU WILL WRITE THIS METHOD
-//    	// get a random control
-//    	Vector control = this.getRobot().getRandomControl(random);
-//    	// make sure it's collision free
-//    	Trajectory trajectory = new Trajectory(control, duration);
-//    	// get the actual new configuration
-//		Vector newConfig = this.getRobot().move(qnear, control, duration);
-//		// if configuration is not duplicate add to tree
-//		if(!parents.containsKey(newConfig)) {
-//			if (this.getEnvironment().isValidMotion(this.getRobot(), qnear, trajectory, RESOLUTION)) {
-//    			parents.put(newConfig, new Edge(qnear, control, duration));
-//    			return true;
-//    		}
-//    	}
-//        return false;
-//    }
+    private void addNode(int parent, Vector control, double duration) {
+    	int v = nodes.size() - 1;
+    	if (v == parents.length) {
+    		parents = Arrays.copyOf(parents, 2 * v);
+    		controls = Arrays.copyOf(controls, 2 * v);
+    		durations = Arrays.copyOf(durations, 2 * v);
+    	}
+    	parents[v] = parent;
+    	durations[v] = duration;
+    	controls[v] = -1;
+    	if (control == null)
+    		return;
+    	if (controlSet != null) {
+    		controls[v] = controlSet.indexOf(control);
+    		assert(controls[v] >= 0);
+    		return;
+    	}
+    	// a continuous control is kept in row v of the control values
+    	controlDimension = control.getDimension();
+    	if (controlDimension * (v + 1) > controlValues.length)
+    		controlValues = Arrays.copyOf(controlValues, Math.max(controlDimension * (v + 1), 2 * controlValues.length));
+    	System.arraycopy(control.values(), 0, controlValues, controlDimension * v, controlDimension);
+    	controls[v] = v;
+    }
+    
+    /**
+     * Get the control of the motion from the parent of a node
+     * @param v the id of the node, which is not the root
+     * @return the control
+     */
+    private Vector getControl(int v) {
+    	if (controlSet != null)
+    		return controlSet.get(controls[v]);
+    	int row = controls[v];
+    	return new Vector(Arrays.copyOfRange(controlValues, controlDimension * row, controlDimension * (row + 1)));
+    }
     
-    @SuppressWarnings("boxing")
     @Override
     protected Trajectory findPath() {
         // YOU WILL WRITE THIS METHOD
-    	// create trajectory from nearest to goal to start
+    	// create trajectory from start to the nearest node to the goal
     	Trajectory trajectory = new Trajectory();
-    	// List to store individual trajectories, to be reversed later
-    	ArrayList<Trajectory> temp = new ArrayList<Trajectory>();
     	// find nearest neighbor to the goal configuration
-    	Vector nearest = nearestNeighbor(parents.keySet(), getGoal());
-    	// get edge
-    	Edge currEdge = parents.get(nearest);
-    	// keep on appending until we reach the start
-    	while (currEdge.getParentConfig()!=null) {
-    		temp.add(new Trajectory(currEdge.getControl(),currEdge.getDuration()));
-    		currEdge = parents.get(currEdge.getParentConfig());
-    	}
-    	// reverse list
-    	Collections.reverse(temp);
-    	// add trajectories in list to an overall trajectory
-    	for (Trajectory traj:temp) {
-    		trajectory.append(traj);
+    	int nearest = nearestKNeighborIds(getGoal(), 1)[0];
+    	// count the motions back to the start, then collect the nodes from the start on
+    	int length = 0;
+    	for (int v = nearest; parents[v]>=0; v = parents[v])
+    		++length;
+    	int[] path = new int[length];
+    	for (int v = nearest; parents[v]>=0; v = parents[v])
+    		path[--length] = v;
+    	// add the motion to each node to the overall trajectory
+    	for (int v:path) {
+    		trajectory.addControl(getControl(v), durations[v]);
     	}
         return trajectory;
     }
@@ -222,7 +226,8 @@ public class RRTPlanner extends MotionPlanner {
     protected void reset() {
         // YOU WILL WRITE THIS METHOD
     	// clear tree
-    	parents.clear();
+    	nodes.clear();
+    	clearIndex();
     }
 
 }
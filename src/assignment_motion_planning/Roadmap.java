@@ -0,0 +1,370 @@
+package assignment_motion_planning;
+
+import java.util.Arrays;
+
+/**
+ * Directed weighted graph over int vertex ids. While the roadmap is built, every vertex
+ * owns a growable block of out-edges (targets and weights in primitive arrays). Before a
+ * search the blocks are frozen into compressed sparse row form: the out-edges of vertex
+ * v are the edges begin(v) to end(v) - 1 of two flat arrays of targets and weights. The
+ * blocks are released once frozen, so every edge is stored once; adding a vertex or an
+ * edge thaws the frozen form back into blocks, while changing a weight or removing an
+ * edge keeps the frozen form current. Searches that walk edges backward also freeze the
+ * reverse roadmap, where the in-edges of v are the edges reverseBegin(v) to
+ * reverseEnd(v) - 1.
+ */
+public class Roadmap {
+    private static final int[] NO_TARGETS = new int[0];
+    private static final double[] NO_WEIGHTS = new double[0];
+    private int vertices = 0;
+    private int edges = 0;
+    private int[][] targets = new int[16][];     // blocks of the vertices, while not frozen
+    private double[][] weights = new double[16][];
+    private int[] degrees = new int[16];
+    private boolean frozen = false;
+    private int[] offsets = NO_TARGETS;  // first edge of each vertex in the frozen form
+    private int[] ends = NO_TARGETS;     // end of the edges of each vertex in the frozen form
+    private int[] csrTargets = NO_TARGETS;
+    private double[] csrWeights = NO_WEIGHTS;
+    private boolean reversed = false;  // whether the reverse frozen form is current
+    private int[] reverseOffsets = NO_TARGETS;
+    private int[] reverseEnds = NO_TARGETS;
+    private int[] csrSources = NO_TARGETS;
+    private double[] csrReverseWeights = NO_WEIGHTS;
+
+    /**
+     * Add a vertex without edges
+     * @return the id of the vertex
+     */
+    public int addVertex() {
+        thaw();
+        if (vertices == degrees.length) {
+            targets = Arrays.copyOf(targets, 2 * vertices);
+            weights = Arrays.copyOf(weights, 2 * vertices);
+            degrees = Arrays.copyOf(degrees, 2 * vertices);
+        }
+        targets[vertices] = new int[4];
+        weights[vertices] = new double[4];
+        degrees[vertices] = 0;
+        return vertices++;
+    }
+
+    /**
+     * Get the number of vertices
+     * @return the number of vertices
+     */
+    public int getNumberOfVertices() {
+        return vertices;
+    }
+
+    /**
+     * Get the number of edges
+     * @return the number of edges
+     */
+    public int getNumberOfEdges() {
+        return edges;
+    }
+
+    /**
+     * Add an edge, or change the weight of the edge if it exists
+     * @param from    the source
+     * @param to      the target
+     * @param weight  the weight
+     */
+    public void setEdge(int from, int to, double weight) {
+        assert(from >= 0 && from < vertices && to >= 0 && to < vertices);
+        if (frozen) {
+            int e = findFrozen(from, to);
+            if (e >= 0) {
+                csrWeights[e] = weight;
+                if (reversed)
+                    csrReverseWeights[findReversed(from, to)] = weight;
+                return;
+            }
+            thaw();
+        }
+        int i = find(from, to);
+        if (i >= 0) {
+            weights[from][i] = weight;
+            return;
+        }
+        int degree = degrees[from];
+        if (degree == targets[from].length) {
+            targets[from] = Arrays.copyOf(targets[from], Math.max(4, 2 * degree));
+            weights[from] = Arrays.copyOf(weights[from], Math.max(4, 2 * degree));
+        }
+        targets[from][degree] = to;
+        weights[from][degree] = weight;
+        ++degrees[from];
+        ++edges;
+    }
+
+    /**
+     * Get the weight of an edge
+     * @param from  the source
+     * @param to    the target
+     * @return the weight, or NaN if there is no such edge
+     */
+    public double getWeight(int from, int to) {
+        if (frozen) {
+            int e = findFrozen(from, to);
+            return e >= 0 ? csrWeights[e] : Double.NaN;
+        }
+        int i = find(from, to);
+        return i >= 0 ? weights[from][i] : Double.NaN;
+    }
+
+    /**
+     * Remove an edge
+     * @param from  the source
+     * @param to    the target
+     * @return true if the edge existed
+     */
+    public boolean removeEdge(int from, int to) {
+        if (frozen) {
+            int e = findFrozen(from, to);
+            if (e < 0)
+                return false;
+            // move the last live edge of the vertex into the hole
+            int end = --ends[from];
+            csrTargets[e] = csrTargets[end];
+            csrWeights[e] = csrWeights[end];
+            if (reversed) {
+                int r = findReversed(from, to), last = --reverseEnds[to];
+                csrSources[r] = csrSources[last];
+                csrReverseWeights[r] = csrReverseWeights[last];
+            }
+        } else {
+            int i = find(from, to);
+            if (i < 0)
+                return false;
+            int last = --degrees[from];
+            targets[from][i] = targets[from][last];
+            weights[from][i] = weights[from][last];
+        }
+        --edges;
+        return true;
+    }
+
+    /**
+     * Get the out-degree of a vertex
+     * @param v the vertex
+     * @return the number of edges leaving it
+     */
+    public int getDegree(int v) {
+        return frozen ? ends[v] - offsets[v] : degrees[v];
+    }
+
+    /**
+     * Build the frozen form and release the blocks, unless the frozen form is current
+     */
+    public void freeze() {
+        if (frozen)
+            return;
+        offsets = new int[vertices + 1];
+        ends = new int[vertices];
+        csrTargets = new int[edges];
+        csrWeights = new double[edges];
+        int e = 0;
+        for (int v = 0; v < vertices; ++v) {
+            offsets[v] = e;
+            System.arraycopy(targets[v], 0, csrTargets, e, degrees[v]);
+            System.arraycopy(weights[v], 0, csrWeights, e, degrees[v]);
+            e += degrees[v];
+            ends[v] = e;
+        }
+        offsets[vertices] = e;
+        Arrays.fill(targets, 0, vertices, null);
+        Arrays.fill(weights, 0, vertices, null);
+        frozen = true;
+    }
+
+    /**
+     * Build the frozen form and the reverse frozen form unless they are current
+     */
+    public void freezeReverse() {
+        freeze();
+        if (reversed)
+            return;
+        reverseOffsets = new int[vertices + 1];
+        reverseEnds = new int[vertices];
+        csrSources = new int[edges];
+        csrReverseWeights = new double[edges];
+        // count the in-edges of each vertex, then place the edges by their targets
+        for (int v = 0; v < vertices; ++v)
+            for (int e = offsets[v]; e < ends[v]; ++e)
+                ++reverseEnds[csrTargets[e]];
+        int e = 0;
+        for (int v = 0; v < vertices; ++v) {
+            reverseOffsets[v] = e;
+            e += reverseEnds[v];
+            reverseEnds[v] = reverseOffsets[v];
+        }
+        reverseOffsets[vertices] = e;
+        for (int v = 0; v < vertices; ++v)
+            for (int f = offsets[v]; f < ends[v]; ++f) {
+                int r = reverseEnds[csrTargets[f]]++;
+                csrSources[r] = v;
+                csrReverseWeights[r] = csrWeights[f];
+            }
+        reversed = true;
+    }
+
+    /**
+     * Check whether the frozen form is current
+     * @return true if the roadmap is frozen
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Get the first out-edge of a vertex in the frozen form
+     * @param v the vertex
+     * @return the index of its first edge
+     */
+    public int begin(int v) {
+        assert(frozen);
+        return offsets[v];
+    }
+
+    /**
+     * Get the end of the out-edges of a vertex in the frozen form
+     * @param v the vertex
+     * @return one past the index of its last edge
+     */
+    public int end(int v) {
+        assert(frozen);
+        return ends[v];
+    }
+
+    /**
+     * Get the first in-edge of a vertex in the reverse frozen form
+     * @param v the vertex
+     * @return the index of its first edge
+     */
+    public int reverseBegin(int v) {
+        assert(reversed);
+        return reverseOffsets[v];
+    }
+
+    /**
+     * Get the end of the in-edges of a vertex in the reverse frozen form
+     * @param v the vertex
+     * @return one past the index of its last edge
+     */
+    public int reverseEnd(int v) {
+        assert(reversed);
+        return reverseEnds[v];
+    }
+
+    /**
+     * Get the source of an edge in the reverse frozen form
+     * @param e the index of the edge
+     * @return its source
+     */
+    public int getEdgeSource(int e) {
+        return csrSources[e];
+    }
+
+    /**
+     * Get the weight of an edge in the reverse frozen form
+     * @param e the index of the edge
+     * @return its weight
+     */
+    public double getReverseEdgeWeight(int e) {
+        return csrReverseWeights[e];
+    }
+
+    /**
+     * Get the target of an edge in the frozen form
+     * @param e the index of the edge
+     * @return its target
+     */
+    public int getEdgeTarget(int e) {
+        return csrTargets[e];
+    }
+
+    /**
+     * Get the weight of an edge in the frozen form
+     * @param e the index of the edge
+     * @return its weight
+     */
+    public double getEdgeWeight(int e) {
+        return csrWeights[e];
+    }
+
+    /**
+     * Remove all vertices and edges
+     */
+    public void clear() {
+        if (!frozen) {
+            Arrays.fill(targets, 0, vertices, null);
+            Arrays.fill(weights, 0, vertices, null);
+        }
+        release();
+        vertices = 0;
+        edges = 0;
+    }
+
+    /**
+     * Copy the frozen form back into blocks, with room for the edges a vertex gains next,
+     * and release it
+     */
+    private void thaw() {
+        if (!frozen)
+            return;
+        for (int v = 0; v < vertices; ++v) {
+            int degree = ends[v] - offsets[v];
+            targets[v] = Arrays.copyOfRange(csrTargets, offsets[v], offsets[v] + degree + 1);
+            weights[v] = Arrays.copyOfRange(csrWeights, offsets[v], offsets[v] + degree + 1);
+            degrees[v] = degree;
+        }
+        release();
+    }
+
+    /**
+     * Drop the frozen forms
+     */
+    private void release() {
+        offsets = ends = csrTargets = NO_TARGETS;
+        csrWeights = NO_WEIGHTS;
+        reverseOffsets = reverseEnds = csrSources = NO_TARGETS;
+        csrReverseWeights = NO_WEIGHTS;
+        frozen = reversed = false;
+    }
+
+    /**
+     * Find an edge among the blocks of its source
+     * @return its position in the block of the source, or -1
+     */
+    private int find(int from, int to) {
+        int[] block = targets[from];
+        for (int i = 0; i < degrees[from]; ++i)
+            if (block[i] == to)
+                return i;
+        return -1;
+    }
+
+    /**
+     * Find an edge in the frozen form
+     * @return its index, or -1
+     */
+    private int findFrozen(int from, int to) {
+        for (int e = offsets[from]; e < ends[from]; ++e)
+            if (csrTargets[e] == to)
+                return e;
+        return -1;
+    }
+
+    /**
+     * Find an edge in the reverse frozen form, which must hold it
+     * @return its index
+     */
+    private int findReversed(int from, int to) {
+        for (int e = reverseOffsets[to]; e < reverseEnds[to]; ++e)
+            if (csrSources[e] == from)
+                return e;
+        throw new IllegalStateException("edge missing from the reverse roadmap");
+    }
+}
@@ -0,0 +1,220 @@
+package assignment_motion_planning;
+
+import java.util.Arrays;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * A* over the frozen form of a roadmap, forward from the start or from both ends at once.
+ * The open lists are indexed heaps whose keys are decreased in place, and the costs,
+ * heuristics and parents of the vertices live in arrays kept from one search to the next:
+ * a vertex's entries are valid only if its stamp equals the generation of the current
+ * search, so starting a search clears nothing and repeated queries allocate only their paths.
+ */
+public class RoadmapSearch {
+    private final Frontier forward = new Frontier();
+    private final Frontier backward = new Frontier();
+    private int generation = 0;
+
+    /**
+     * Find a shortest path; the path is shortest if the heuristic never overestimates
+     * @param graph      the roadmap
+     * @param start      the id of the start vertex
+     * @param goal       the id of the goal vertex
+     * @param heuristic  estimate of the cost from a vertex to the goal
+     * @return the ids along the path, or null if the goal cannot be reached
+     */
+    public int[] aStar(Roadmap graph, int start, int goal, IntToDoubleFunction heuristic) {
+        graph.freeze();
+        begin(graph.getNumberOfVertices());
+        forward.open(start, heuristic);
+        while (!forward.open.isEmpty()) {
+            int v = forward.expand();
+            if (v == goal)
+                return forward.backChain(goal, 0, forward.length(goal));
+            for (int e = graph.begin(v); e < graph.end(v); ++e)
+                forward.relax(v, graph.getEdgeTarget(e), graph.getEdgeWeight(e), heuristic, Double.POSITIVE_INFINITY);
+        }
+        return null;
+    }
+
+    /**
+     * Find a shortest path by searching forward from the start and backward from the goal
+     * along the reverse roadmap, expanding the side with the smaller open list. Each side
+     * is guided by its own end: the forward search by the estimate to the goal, the
+     * backward search by the estimate from the start. Whenever a side reaches a vertex the
+     * other side has reached, the two costs make a path; the search stops once the smallest
+     * key of either open list is no less than the best such path, since every shorter path
+     * would have to pass through a vertex of that list.
+     * @param graph      the roadmap
+     * @param start      the id of the start vertex
+     * @param goal       the id of the goal vertex
+     * @param toGoal     estimate of the cost from a vertex to the goal
+     * @param fromStart  estimate of the cost from the start to a vertex
+     * @return the ids along the path, or null if the goal cannot be reached
+     */
+    public int[] bidirectionalAStar(Roadmap graph, int start, int goal,
+                                    IntToDoubleFunction toGoal, IntToDoubleFunction fromStart) {
+        graph.freezeReverse();
+        begin(graph.getNumberOfVertices());
+        forward.open(start, toGoal);
+        backward.open(goal, fromStart);
+        double best = start == goal ? 0 : Double.POSITIVE_INFINITY;
+        int meet = start == goal ? start : -1;
+        while (!forward.open.isEmpty() && !backward.open.isEmpty()) {
+            if (Math.max(forward.open.peekKey(), backward.open.peekKey()) >= best)
+                break;
+            boolean forth = forward.open.size() <= backward.open.size();
+            Frontier side = forth ? forward : backward, other = forth ? backward : forward;
+            IntToDoubleFunction heuristic = forth ? toGoal : fromStart;
+            int v = side.expand();
+            int begin = forth ? graph.begin(v) : graph.reverseBegin(v);
+            int end = forth ? graph.end(v) : graph.reverseEnd(v);
+            for (int e = begin; e < end; ++e) {
+                int w = forth ? graph.getEdgeTarget(e) : graph.getEdgeSource(e);
+                double weight = forth ? graph.getEdgeWeight(e) : graph.getReverseEdgeWeight(e);
+                if (side.relax(v, w, weight, heuristic, best) && other.isReached(w)
+                        && side.costs[w] + other.costs[w] < best) {
+                    best = side.costs[w] + other.costs[w];
+                    meet = w;
+                }
+            }
+        }
+        if (meet < 0)
+            return null;
+        // the forward parents lead back to the start, the backward parents on to the goal
+        int head = forward.length(meet), tail = backward.length(meet) - 1;
+        int[] result = forward.backChain(meet, tail, head);
+        for (int u = backward.parents[meet], i = head; u >= 0; u = backward.parents[u])
+            result[i++] = u;
+        return result;
+    }
+
+    /**
+     * Get the number of vertices the last search expanded forward
+     * @return the number of expansions
+     */
+    public int getExpansions() {
+        return forward.expansions;
+    }
+
+    /**
+     * Get the number of vertices the last search expanded backward
+     * @return the number of expansions, 0 unless the search was bidirectional
+     */
+    public int getBackwardExpansions() {
+        return backward.expansions;
+    }
+
+    /**
+     * Start a new generation of the arrays, growing them to the number of vertices
+     */
+    private void begin(int vertices) {
+        if (++generation == Integer.MAX_VALUE) {
+            Arrays.fill(forward.stamps, 0);
+            Arrays.fill(backward.stamps, 0);
+            generation = 1;
+        }
+        forward.begin(vertices, generation);
+        backward.begin(vertices, generation);
+    }
+
+    /**
+     * The state of a search from one end: the open list and, for every vertex reached in
+     * the current generation, its cost from that end, its heuristic and its parent
+     */
+    private static final class Frontier {
+        private final IndexedHeap open = new IndexedHeap();
+        private double[] costs = new double[0];
+        private double[] heuristics = new double[0];
+        private int[] parents = new int[0];
+        private int[] stamps = new int[0];  // generation in which each vertex was last reached
+        private int generation = 0;
+        private int expansions = 0;
+
+        private void begin(int vertices, int g) {
+            if (stamps.length < vertices) {
+                int capacity = Math.max(vertices, 2 * stamps.length);
+                costs = Arrays.copyOf(costs, capacity);
+                heuristics = Arrays.copyOf(heuristics, capacity);
+                parents = Arrays.copyOf(parents, capacity);
+                stamps = Arrays.copyOf(stamps, capacity);
+            }
+            generation = g;
+            open.reset(vertices);
+            expansions = 0;
+        }
+
+        private boolean isReached(int v) {
+            return stamps[v] == generation;
+        }
+
+        /**
+         * Put the end vertex of the search into the open list
+         */
+        private void open(int v, IntToDoubleFunction heuristic) {
+            reach(v, -1, 0, heuristic);
+            open.offer(v, heuristics[v]);
+        }
+
+        /**
+         * Remove the vertex with the smallest key from the open list
+         */
+        private int expand() {
+            ++expansions;
+            return open.poll();
+        }
+
+        /**
+         * Reach w through an edge from v if that lowers its cost; a vertex that was
+         * expanded before is reopened, unless its key shows that no path through it is
+         * shorter than a bound
+         * @return true if the cost of w was lowered
+         */
+        private boolean relax(int v, int w, double weight, IntToDoubleFunction heuristic, double bound) {
+            double newCost = costs[v] + weight;
+            if (isReached(w) && costs[w] <= newCost)
+                return false;
+            reach(w, v, newCost, heuristic);
+            if (newCost + heuristics[w] < bound)
+                open.offer(w, newCost + heuristics[w]);
+            return true;
+        }
+
+        /**
+         * Record a cost and a parent for a vertex, computing its heuristic the first time
+         * the vertex is reached in this generation
+         */
+        private void reach(int v, int parent, double cost, IntToDoubleFunction heuristic) {
+            if (!isReached(v)) {
+                stamps[v] = generation;
+                heuristics[v] = heuristic.applyAsDouble(v);
+            }
+            costs[v] = cost;
+            parents[v] = parent;
+        }
+
+        /**
+         * Count the vertices from a vertex back to the end of the search
+         */
+        private int length(int v) {
+            int result = 0;
+            for (int u = v; u >= 0; u = parents[u])
+                ++result;
+            return result;
+        }
+
+        /**
+         * Follow the parents from a vertex back to the end of the search
+         * @param v       the vertex
+         * @param extra   room to leave after the path
+         * @param length  the number of vertices on the path
+         * @return the ids along the path, the end of the search first
+         */
+        private int[] backChain(int v, int extra, int length) {
+            int[] result = new int[length + extra];
+            for (int u = v; u >= 0; u = parents[u])
+                result[--length] = u;
+            return result;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package assignment_motion_planning;
 
 import java.awt.geom.Area;
 import java.awt.geom.PathIterator;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 import java.util.ArrayList;
@@ -27,6 +28,46 @@ public abstract class Robot {
      */
     public abstract List<Vector> getTransformation(Vector configuration);
     
+    /**
+     * Get the transformation in the global frame for each shape without allocating
+     * @param configuration  the configuration
+     * @param transforms     output, (x, y, theta) for each shape packed one after another
+     */
+    public void getTransformation(double[] configuration, double[] transforms) {
+        List<Vector> result = getTransformation(new Vector(configuration));
+        for (int i = 0; i < result.size(); ++i) {
+            Vector t = result.get(i);
+            transforms[3 * i] = t.get(0);
+            transforms[3 * i + 1] = t.get(1);
+            transforms[3 * i + 2] = t.get(2);
+        }
+    }
+    
+    /**
+     * Extend the transformations of a prefix of the shapes. The transformations of shapes
+     * [0, from) must already be in transforms for this configuration; on return those of
+     * shapes [0, to) are. By default every shape is computed when from is 0.
+     * @param configuration  the configuration
+     * @param transforms     input and output, (x, y, theta) for each shape
+     * @param from           number of shapes already computed
+     * @param to             number of shapes needed
+     */
+    public void getTransformation(double[] configuration, double[] transforms, int from, int to) {
+        if (from == 0 && to > 0)
+            getTransformation(configuration, transforms);
+    }
+    
+    /**
+     * Count the leading shapes whose transformations are the same for two configurations,
+     * so that the transformations computed for one can be reused for the other
+     * @param q1 a configuration
+     * @param q2 another configuration
+     * @return the number of shared shapes; 0 by default
+     */
+    public int getSharedShapes(double[] q1, double[] q2) {
+        return 0;
+    }
+    
     /**
      * Get the dimension of the configuration of the robot
      * @return the dimension
@@ -41,6 +82,35 @@ public abstract class Robot {
      */
     public abstract double getMetric(Vector q1, Vector q2);
     
+    /**
+     * (pseudo)-Metric between two configurations stored in flat arrays, for nearest
+     * neighbor search without allocating vectors
+     * @param q1       array holding the first configuration
+     * @param offset1  index of its first coordinate
+     * @param q2       array holding the second configuration
+     * @param offset2  index of its first coordinate
+     * @return the (pseudo)-metric; by default getMetric on copies of the coordinates
+     */
+    public double getMetric(double[] q1, int offset1, double[] q2, int offset2) {
+        int n = getDimension();
+        return getMetric(new Vector(Arrays.copyOfRange(q1, offset1, offset1 + n)), new Vector(Arrays.copyOfRange(q2, offset2, offset2 + n)));
+    }
+    
+    /**
+     * Get the volume of the configuration space, measured in the coordinates of the
+     * configuration, for the connection radius of asymptotically optimal planners
+     * @param environment  the workspace
+     * @return the volume, including the space occupied by obstacles
+     */
+    public abstract double getVolume(Environment environment);
+    
+    /**
+     * Get the volume of the ball of radius 1 of getMetric, in the same coordinates as
+     * getVolume
+     * @return the volume of the unit ball
+     */
+    public abstract double getUnitBallVolume();
+    
     /**
      * Generate a random configuration
      * @param environment  the workspace
@@ -65,6 +135,38 @@ public abstract class Robot {
      */
     public abstract Vector move(Vector configuration, Vector control, double duration);
     
+    /**
+     * Upper bound on the speed of any point of the robot in the workspace while a control
+     * is applied, from any configuration
+     * @param control the control
+     * @return the bound, or infinity if the robot does not provide one
+     */
+    public double getMaxSpeed(Vector control) {
+        return Double.POSITIVE_INFINITY;
+    }
+    
+    /**
+     * Upper bound on the speed of any point of the robot in the workspace while a control
+     * is applied, without allocating
+     * @param control the coordinates of the control
+     * @return the bound; by default getMaxSpeed on a copy of the control
+     */
+    public double getMaxSpeed(double[] control) {
+        return getMaxSpeed(new Vector(control));
+    }
+    
+    /**
+     * Apply the control with duration on a robot at given configuration, without allocating
+     * @param configuration  the configuration of the robot
+     * @param control        the control to be applied
+     * @param duration       the duration
+     * @param result         output, the resulting configuration; may be configuration itself
+     */
+    public void move(double[] configuration, double[] control, double duration, double[] result) {
+        Vector next = move(new Vector(configuration), new Vector(control), duration);
+        System.arraycopy(next.values(), 0, result, 0, getDimension());
+    }
+    
     /**
      * Get all possible controls
      * @return a list of controls
@@ -83,14 +185,10 @@ public abstract class Robot {
     public final List<Vector> interpolate(Vector configuration, Trajectory trajectory, double resolution) {
         assert(configuration.getDimension() == getDimension());
         List<Vector> result = new ArrayList<>();
-        result.add(configuration);
-        Vector current = configuration;
-        for (int i = 0; i < trajectory.size(); ++i) {
-            Vector control = trajectory.getControl(i);
-            double duration = trajectory.getDuration(i);
-            result.addAll(interpolate(current, control, duration, resolution));
-            current = move(current, control, duration);
-        }
+        double[] buffer = new double[getDimension()];
+        Interpolation cursor = getInterpolation().reset(configuration, trajectory, resolution);
+        while (cursor.next(buffer))
+            result.add(new Vector(buffer));
         return result;
     }
     
@@ -104,14 +202,82 @@ public abstract class Robot {
      */
     public final List<Vector> interpolate(Vector configuration, Vector control, double duration, double resolution) {
         assert(configuration.getDimension() == getDimension());
-        List<Vector> result = new ArrayList<>();
-        for (double time = resolution; time < duration; time += resolution) {
-            result.add(move(configuration, control, time));
-        }
-        result.add(move(configuration, control, duration));
+        List<Vector> result = interpolate(configuration, new Trajectory(control, duration), resolution);
+        result.remove(0);
         return result;
     }
     
+    /**
+     * Get a cursor over the configurations along trajectories
+     * @return a new cursor, which can be reused for any number of trajectories
+     */
+    public final Interpolation getInterpolation() {
+        return new Interpolation();
+    }
+    
+    /**
+     * Cursor over the configurations along a trajectory, in the same order as interpolate.
+     * Each configuration is written into a caller-supplied array, so after construction
+     * the cursor allocates nothing, and the consumer can stop at any point.
+     */
+    public final class Interpolation {
+        private final double[] begin = new double[getDimension()];  // start of the current control
+        private Trajectory trajectory;
+        private double[] u = new double[0];  // the current control
+        private double resolution;
+        private int control;   // index of the current control
+        private int step;      // number of samples taken in the current control
+        private boolean started;
+        
+        /**
+         * Start a new trajectory
+         * @param configuration  begin configuration
+         * @param t              the trajectory to be interpolated
+         * @param r              resolution for interpolation
+         * @return this cursor
+         */
+        public Interpolation reset(Vector configuration, Trajectory t, double r) {
+            assert(configuration.getDimension() == getDimension());
+            assert(r > 0);
+            System.arraycopy(configuration.values(), 0, begin, 0, begin.length);
+            trajectory = t;
+            if (u.length != t.getControlDimension())
+                u = new double[t.getControlDimension()];
+            resolution = r;
+            control = 0;
+            step = 0;
+            started = false;
+            return this;
+        }
+        
+        /**
+         * Advance to the next configuration
+         * @param result output, receives the configuration
+         * @return true if there was a next configuration, and false at the end of the trajectory
+         */
+        public boolean next(double[] result) {
+            if (!started) {
+                started = true;
+                System.arraycopy(begin, 0, result, 0, begin.length);
+                return true;
+            }
+            if (control >= trajectory.size())
+                return false;
+            double duration = trajectory.getDuration(control);
+            trajectory.getControl(control, u);
+            double time = ++step * resolution;
+            if (time < duration) {
+                move(begin, u, time, result);
+                return true;
+            }
+            move(begin, u, duration, result);
+            System.arraycopy(result, 0, begin, 0, begin.length);
+            ++control;
+            step = 0;
+            return true;
+        }
+    }
+    
     /**
      * Steering method: connecting two configurations without considering obstacles
      * @param q1  begin configuration
@@ -123,6 +289,46 @@ public abstract class Robot {
         return null;
     }
 
+    /**
+     * Create an empty nearest neighbor index for configurations of this robot
+     * @param store the store of the configurations to index
+     * @return an index that uses getMetric; by default a vantage point tree, which only
+     *         needs getMetric to be a metric
+     */
+    public NearestNeighbors createNearestNeighbors(ConfigurationStore store) {
+        return new VantagePointTree(this, store);
+    }
+    
+    /**
+     * Get the number of coordinates of the embedding
+     * @return the dimension of the embedding; by default that of the configuration
+     */
+    public int getEmbeddingDimension() {
+        return getDimension();
+    }
+    
+    /**
+     * Map a configuration to a point of a Euclidean space whose distances roughly follow
+     * getMetric, for approximate nearest neighbor search
+     * @param configuration  the configuration
+     * @param result         output, getEmbeddingDimension() coordinates; by default the
+     *                       configuration itself
+     */
+    public void embed(Vector configuration, double[] result) {
+        for (int i = 0; i < getDimension(); ++i)
+            result[i] = configuration.get(i);
+    }
+    
+    /**
+     * Whether the steering method is symmetric: steer(q2, q1) passes through the same
+     * configurations as steer(q1, q2) in reverse, so an edge valid in one direction is
+     * valid in the other
+     * @return true if the steering method is symmetric
+     */
+    public boolean isSteeringSymmetric() {
+        return false;
+    }
+
     /**
      * Normalize the configuration
      * @param configuration the configuration to be normalized
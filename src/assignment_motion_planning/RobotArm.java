@@ -14,6 +14,7 @@ import java.util.stream.Collectors;
 public class RobotArm extends Robot {
     private static final double WIDTH = (1 + Math.sqrt(5.0)) / 2.0;
     private static final double HEIGHT = 0.3;
+    private static final double REACH = Math.hypot(WIDTH, HEIGHT / 2.0);  // distance from a joint to the far corners of its link
     private List<Shape> shapes;
     
     private static final Path2D.Double RECTANGLE = new Path2D.Double();
@@ -61,6 +62,39 @@ public class RobotArm extends Robot {
         return Arrays.asList(result);
     }
     
+    @Override
+    public void getTransformation(double[] configuration, double[] transforms) {
+        getTransformation(configuration, transforms, 0, getDimension());
+    }
+    
+    @Override
+    public void getTransformation(double[] configuration, double[] transforms, int from, int to) {
+        assert(configuration.length == getDimension());
+        assert(0 <= from && to <= getDimension());
+        // each link starts at the far end of the one before it
+        for (int i = from; i < to; ++i) {
+            if (i == 0) {
+                transforms[0] = 0.0;
+                transforms[1] = 0.0;
+                transforms[2] = normalize(configuration[0]);
+                continue;
+            }
+            double theta = transforms[3 * i - 1];
+            transforms[3 * i] = transforms[3 * i - 3] + WIDTH * Math.cos(theta);
+            transforms[3 * i + 1] = transforms[3 * i - 2] + WIDTH * Math.sin(theta);
+            transforms[3 * i + 2] = normalize(theta + configuration[i]);
+        }
+    }
+    
+    @Override
+    public int getSharedShapes(double[] q1, double[] q2) {
+        // link i depends only on joints 0 to i
+        int i = 0;
+        while (i < getDimension() && q1[i] == q2[i])
+            ++i;
+        return i;
+    }
+    
     @Override
     public Area getArea(Vector configuration) {
         assert(configuration.getDimension() == getDimension());
@@ -77,6 +111,25 @@ public class RobotArm extends Robot {
         return result;
     }
     
+    @Override
+    public double getMaxSpeed(Vector control) {
+        assert(control.getDimension() == getDimension());
+        return getMaxSpeed(control.values());
+    }
+
+    @Override
+    public double getMaxSpeed(double[] control) {
+        // link i turns at most as fast as the sum of |u_j| for j <= i; every joint before
+        // the last link moves at most WIDTH times that, and a point on the last link is
+        // at most REACH away from its joint
+        double result = 0.0, rate = 0.0;
+        for (int i = 0; i < getDimension(); ++i) {
+            rate += Math.abs(control[i]);
+            result += (i + 1 < getDimension() ? WIDTH : REACH) * rate;
+        }
+        return result;
+    }
+    
     @Override
     public List<PathIterator> getShape() {
         return shapes.stream().map(o -> o.getPathIterator(null)).collect(Collectors.toList());
@@ -87,6 +140,25 @@ public class RobotArm extends Robot {
         return shapes.size();
     }
 
+    @Override
+    public NearestNeighbors createNearestNeighbors(ConfigurationStore store) {
+        return new TorusKDTree(this, store);
+    }
+
+    @Override
+    public int getEmbeddingDimension() {
+        return 2 * getDimension();
+    }
+
+    @Override
+    public void embed(Vector configuration, double[] result) {
+        // each joint goes to the unit circle, where the chord follows the angle difference
+        for (int i = 0; i < getDimension(); ++i) {
+            result[2 * i] = Math.cos(configuration.get(i));
+            result[2 * i + 1] = Math.sin(configuration.get(i));
+        }
+    }
+
     @Override
     public Vector getRandomConfiguration(Environment environment, Random random) {
         double[] angles = new double[getDimension()];
@@ -99,13 +171,32 @@ public class RobotArm extends Robot {
     public double getMetric(Vector q1, Vector q2) {
         assert(q1.getDimension() == getDimension());
         assert(q2.getDimension() == getDimension());
+        return getMetric(q1.values(), 0, q2.values(), 0);
+    }
+
+    @Override
+    public double getMetric(double[] q1, int offset1, double[] q2, int offset2) {
         double result = 0.0;
         for (int i = 0; i < getDimension(); ++i) {
-            result += Robot.getAbsDiff(q1.get(i), q2.get(i));
+            result += Robot.getAbsDiff(q1[offset1 + i], q2[offset2 + i]);
         }
         return result;
     }
 
+    @Override
+    public double getVolume(Environment environment) {
+        return Math.pow(2.0 * Math.PI, getDimension());
+    }
+
+    @Override
+    public double getUnitBallVolume() {
+        // the ball of the sum of the absolute differences is a cross-polytope, of volume 2^d / d!
+        double result = 1.0;
+        for (int i = 1; i <= getDimension(); ++i)
+            result *= 2.0 / i;
+        return result;
+    }
+
     @Override
     public Vector getRandomControl(Random random) {
         double[] control = new double[getDimension()];
@@ -125,6 +216,15 @@ public class RobotArm extends Robot {
         return new Vector(config);
     }
 
+    @Override
+    public void move(double[] configuration, double[] control, double duration, double[] result) {
+        assert(configuration.length == getDimension());
+        assert(control.length == getDimension());
+        for (int i = 0; i < getDimension(); ++i) {
+            result[i] = normalize(configuration[i] + control[i] * duration);
+        }
+    }
+
     @Override
     public Vector normalize(Vector configuration) {
         assert(configuration.getDimension() == getDimension());
@@ -134,6 +234,15 @@ public class RobotArm extends Robot {
         return new Vector(config);
     }
     
+    /**
+     * Each joint turns the shorter way at a constant rate, so the reverse motion
+     * retraces the same configurations
+     */
+    @Override
+    public boolean isSteeringSymmetric() {
+        return true;
+    }
+    
     /**
      * Steering method for the robot arm
      */
@@ -0,0 +1,228 @@
+package assignment_motion_planning;
+
+import java.util.Arrays;
+
+/**
+ * Incremental KD-tree over configurations (x, y, theta) for the metric
+ * max(|(x1, y1) - (x2, y2)|, w * |theta1 - theta2|), where the angle difference wraps
+ * around the circle. Each node splits on x, y or theta in turn at its own configuration.
+ * A query keeps the box of each subtree and skips the subtree when the metric from the
+ * query to the box, measuring theta along the circle, cannot beat the K-th best so far
+ * or exceeds the radius of the query. The tree keeps the normalized coordinates it splits
+ * on; the metric is computed on the configurations of the store.
+ */
+public class SE2KDTree implements NearestNeighbors {
+    private static final int DIMENSION = 3;
+    private final Robot robot;
+    private final double angleWeight;
+    private final ConfigurationStore store;
+    private double[] coordinates = new double[DIMENSION * 16];  // x, y and normalized theta of each node
+    private int[] left = new int[16];
+    private int[] right = new int[16];
+    private int size = 0;
+    private int depth = 0;
+    private final ThreadLocal<Search> searches = ThreadLocal.withInitial(Search::new);
+
+    /**
+     * Constructor
+     * @param robot        the robot, whose metric must have the form above
+     * @param angleWeight  the weight w of the angle difference
+     * @param store        the store of the configurations
+     */
+    public SE2KDTree(Robot robot, double angleWeight, ConfigurationStore store) {
+        assert(robot.getDimension() == DIMENSION && store.getDimension() == DIMENSION);
+        assert(angleWeight > 0);
+        this.robot = robot;
+        this.angleWeight = angleWeight;
+        this.store = store;
+    }
+
+    @Override
+    public ConfigurationStore getStore() {
+        return store;
+    }
+
+    @Override
+    public void add(int id) {
+        assert(id == size && id < store.size());
+        if (size == left.length) {
+            int capacity = 2 * size;
+            coordinates = Arrays.copyOf(coordinates, DIMENSION * capacity);
+            left = Arrays.copyOf(left, capacity);
+            right = Arrays.copyOf(right, capacity);
+        }
+        int node = size++;
+        coordinates[DIMENSION * node] = store.get(node, 0);
+        coordinates[DIMENSION * node + 1] = store.get(node, 1);
+        coordinates[DIMENSION * node + 2] = Robot.normalize(store.get(node, 2));
+        left[node] = right[node] = -1;
+        if (node == 0)
+            return;
+        int parent = 0, level = 0;
+        while (true) {
+            int axis = level % DIMENSION;
+            ++level;
+            boolean lower = coordinates[DIMENSION * node + axis] < coordinates[DIMENSION * parent + axis];
+            int child = lower ? left[parent] : right[parent];
+            if (child < 0) {
+                if (lower)
+                    left[parent] = node;
+                else
+                    right[parent] = node;
+                break;
+            }
+            parent = child;
+        }
+        depth = Math.max(depth, level);
+    }
+
+    @Override
+    public int[] nearestKIndices(Vector query, int K) {
+        assert(K > 0);
+        return search(query, K, Double.POSITIVE_INFINITY);
+    }
+
+    @Override
+    public int[] withinRadiusIndices(Vector query, double radius) {
+        assert(radius >= 0);
+        return search(query, Integer.MAX_VALUE, radius);
+    }
+
+    /**
+     * Find up to K configurations within a radius of a query
+     * @param query   the query configuration
+     * @param K       the maximum number of configurations
+     * @param radius  the radius
+     * @return the ids of the configurations, nearest first
+     */
+    private int[] search(Vector query, int K, double radius) {
+        assert(query.getDimension() == DIMENSION);
+        Search s = searches.get();
+        s.begin(K, depth);
+        if (size == 0)
+            return new int[0];
+        double qx = query.get(0), qy = query.get(1), qt = Robot.normalize(query.get(2));
+        double[] q = query.values(), configurations = store.values();
+        // the root covers the whole plane and every angle
+        double[] box = s.box;
+        box[0] = box[2] = Double.NEGATIVE_INFINITY;
+        box[1] = box[3] = Double.POSITIVE_INFINITY;
+        box[4] = 0.0;
+        box[5] = 2.0 * Math.PI;
+        s.push(0, 0, box, 0, box[0]);
+        while (s.top > 0) {
+            int node = s.pop();
+            if (getBound(qx, qy, qt, box) > Math.min(radius, s.heap.worst()))
+                continue;
+            double distance = robot.getMetric(q, 0, configurations, DIMENSION * node);
+            if (distance <= radius)
+                s.heap.offer(node, distance);
+            int axis = s.level % DIMENSION;
+            double value = axis == 0 ? qx : axis == 1 ? qy : qt;
+            double split = coordinates[DIMENSION * node + axis];
+            // push the far side first so that the near side is searched first; the left
+            // side gets the split as its upper bound and the right side as its lower bound
+            if (value < split) {
+                if (right[node] >= 0)
+                    s.push(right[node], s.level + 1, box, 2 * axis, split);
+                if (left[node] >= 0)
+                    s.push(left[node], s.level + 1, box, 2 * axis + 1, split);
+            } else {
+                if (left[node] >= 0)
+                    s.push(left[node], s.level + 1, box, 2 * axis + 1, split);
+                if (right[node] >= 0)
+                    s.push(right[node], s.level + 1, box, 2 * axis, split);
+            }
+        }
+        return s.result();
+    }
+
+    /**
+     * Compute a lower bound on the metric from a query to any configuration in a box
+     * @param qx   x of the query
+     * @param qy   y of the query
+     * @param qt   normalized theta of the query
+     * @param box  (minX, maxX, minY, maxY, minTheta, maxTheta)
+     * @return the lower bound
+     */
+    private double getBound(double qx, double qy, double qt, double[] box) {
+        double dx = qx < box[0] ? box[0] - qx : qx > box[1] ? qx - box[1] : 0.0;
+        double dy = qy < box[2] ? box[2] - qy : qy > box[3] ? qy - box[3] : 0.0;
+        double dt = 0.0;
+        if (qt < box[4] || qt > box[5])
+            dt = Math.min(Robot.getAbsDiff(qt, box[4]), Robot.getAbsDiff(qt, box[5]));
+        return Math.max(Math.hypot(dx, dy), angleWeight * dt);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        depth = 0;
+    }
+
+    /**
+     * Per-thread state of a query: a stack of subtrees with their boxes and levels, and
+     * a max-heap of the best K nodes so far
+     */
+    private static final class Search {
+        private int[] stack = new int[0];
+        private int[] levels = new int[0];
+        private double[] boxes = new double[0];
+        private final double[] box = new double[6];  // (minX, maxX, minY, maxY, minTheta, maxTheta)
+        private int top = 0;
+        private int level = 0;
+        private final NeighborHeap heap = new NeighborHeap();
+
+        public void begin(int k, int treeDepth) {
+            heap.reset(k);
+            top = 0;
+            int capacity = 2 * (treeDepth + 1);
+            if (stack.length < capacity) {
+                stack = new int[capacity];
+                levels = new int[capacity];
+                boxes = new double[6 * capacity];
+            }
+        }
+
+        /**
+         * Push a subtree whose box is a given box with one side replaced
+         * @param node   the root of the subtree
+         * @param l      its level
+         * @param from   the box to copy
+         * @param side   the side to replace
+         * @param value  the new value of the side
+         */
+        public void push(int node, int l, double[] from, int side, double value) {
+            stack[top] = node;
+            levels[top] = l;
+            System.arraycopy(from, 0, boxes, 6 * top, 6);
+            boxes[6 * top + side] = value;
+            ++top;
+        }
+
+        /**
+         * Pop a subtree, leaving its box in box and its level in level
+         * @return the root of the subtree
+         */
+        public int pop() {
+            --top;
+            System.arraycopy(boxes, 6 * top, box, 0, 6);
+            level = levels[top];
+            return stack[top];
+        }
+
+        /**
+         * Empty the heap, nearest first
+         */
+        public int[] result() {
+            int[] ids = new int[heap.size()];
+            heap.drain(ids);
+            return ids;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package assignment_motion_planning;
+
+import java.util.Arrays;
+
+/**
+ * Incremental KD-tree over configurations whose coordinates are all angles, for the
+ * metric sum_i |q1_i - q2_i| with every difference taken along the circle, as in
+ * RobotArm. Coordinates are normalized to [0, 2*pi) and each node splits on one of them
+ * in turn at its own configuration, so the box of a subtree is a product of arcs. A query
+ * skips a subtree when the sum over the coordinates of the distance along the circle from
+ * the query to the arc cannot beat the K-th best so far or exceeds the radius of the
+ * query. Because the bound wraps, configurations on either side of the seam at 0 are
+ * found as neighbors without mirroring the query.
+ */
+public class TorusKDTree implements NearestNeighbors {
+    private final int dimension;
+    private final ConfigurationStore store;
+    private double[] coordinates;  // normalized angles of each node
+    private int[] left = new int[16];
+    private int[] right = new int[16];
+    private int size = 0;
+    private int depth = 0;
+    private final ThreadLocal<Search> searches;
+
+    /**
+     * Constructor
+     * @param robot the robot, whose metric must have the form above; distances are
+     *              computed from the normalized angles rather than through getMetric
+     * @param store the store of the configurations
+     */
+    public TorusKDTree(Robot robot, ConfigurationStore store) {
+        assert(robot != null && store.getDimension() == robot.getDimension());
+        this.dimension = robot.getDimension();
+        this.store = store;
+        coordinates = new double[dimension * 16];
+        searches = ThreadLocal.withInitial(() -> new Search(dimension));
+    }
+
+    @Override
+    public ConfigurationStore getStore() {
+        return store;
+    }
+
+    @Override
+    public void add(int id) {
+        assert(id == size && id < store.size());
+        if (size == left.length) {
+            int capacity = 2 * size;
+            coordinates = Arrays.copyOf(coordinates, dimension * capacity);
+            left = Arrays.copyOf(left, capacity);
+            right = Arrays.copyOf(right, capacity);
+        }
+        int node = size++;
+        for (int i = 0; i < dimension; ++i)
+            coordinates[dimension * node + i] = Robot.normalize(store.get(node, i));
+        left[node] = right[node] = -1;
+        if (node == 0)
+            return;
+        int parent = 0, level = 0;
+        while (true) {
+            int axis = level % dimension;
+            ++level;
+            boolean lower = coordinates[dimension * node + axis] < coordinates[dimension * parent + axis];
+            int child = lower ? left[parent] : right[parent];
+            if (child < 0) {
+                if (lower)
+                    left[parent] = node;
+                else
+                    right[parent] = node;
+                break;
+            }
+            parent = child;
+        }
+        depth = Math.max(depth, level);
+    }
+
+    @Override
+    public int[] nearestKIndices(Vector query, int K) {
+        assert(K > 0);
+        return search(query, K, Double.POSITIVE_INFINITY);
+    }
+
+    @Override
+    public int[] withinRadiusIndices(Vector query, double radius) {
+        assert(radius >= 0);
+        return search(query, Integer.MAX_VALUE, radius);
+    }
+
+    /**
+     * Find up to K configurations within a radius of a query
+     * @param query   the query configuration
+     * @param K       the maximum number of configurations
+     * @param radius  the radius
+     * @return the ids of the configurations, nearest first
+     */
+    private int[] search(Vector query, int K, double radius) {
+        assert(query.getDimension() == dimension);
+        Search s = searches.get();
+        s.begin(K, depth);
+        if (size == 0)
+            return new int[0];
+        double[] q = s.query;
+        for (int i = 0; i < dimension; ++i)
+            q[i] = Robot.normalize(query.get(i));
+        // the root covers the whole torus
+        double[] box = s.box;
+        for (int i = 0; i < dimension; ++i) {
+            box[2 * i] = 0.0;
+            box[2 * i + 1] = 2.0 * Math.PI;
+        }
+        s.push(0, 0, box, 0, box[0], 0.0);
+        while (s.top > 0) {
+            int node = s.pop();
+            if (s.bound > Math.min(radius, s.heap.worst()))
+                continue;
+            double distance = getDistance(q, node);
+            if (distance <= radius)
+                s.heap.offer(node, distance);
+            int axis = s.level % dimension;
+            double split = coordinates[dimension * node + axis];
+            // the bound of a child differs from that of the node only along the split axis
+            double lo = box[2 * axis], hi = box[2 * axis + 1];
+            double base = s.bound - getBound(q[axis], lo, hi);
+            double leftBound = base + getBound(q[axis], lo, split);
+            double rightBound = base + getBound(q[axis], split, hi);
+            // push the far side first so that the near side is searched first; the left
+            // side gets the split as its upper bound and the right side as its lower bound
+            if (q[axis] < split) {
+                if (right[node] >= 0)
+                    s.push(right[node], s.level + 1, box, 2 * axis, split, rightBound);
+                if (left[node] >= 0)
+                    s.push(left[node], s.level + 1, box, 2 * axis + 1, split, leftBound);
+            } else {
+                if (left[node] >= 0)
+                    s.push(left[node], s.level + 1, box, 2 * axis + 1, split, leftBound);
+                if (right[node] >= 0)
+                    s.push(right[node], s.level + 1, box, 2 * axis, split, rightBound);
+            }
+        }
+        return s.result();
+    }
+
+    /**
+     * Compute the distance along the circle from an angle to an arc
+     * @param q   the normalized angle
+     * @param lo  start of the arc
+     * @param hi  end of the arc
+     * @return the distance, or 0 if the angle is on the arc
+     */
+    private static double getBound(double q, double lo, double hi) {
+        if (q >= lo && q <= hi)
+            return 0.0;
+        return Math.min(Robot.getAbsDiff(q, lo), Robot.getAbsDiff(q, hi));
+    }
+
+    /**
+     * Compute the metric from a query to a node, from their normalized angles
+     * @param q     normalized angles of the query
+     * @param node  the node
+     * @return the metric
+     */
+    private double getDistance(double[] q, int node) {
+        double result = 0.0;
+        for (int i = 0, c = dimension * node; i < dimension; ++i, ++c)
+            result += Robot.getAbsDiff(q[i], coordinates[c]);
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        depth = 0;
+    }
+
+    /**
+     * Per-thread state of a query: a stack of subtrees with their boxes and levels, and
+     * a heap of the best nodes so far
+     */
+    private static final class Search {
+        private final int width;  // doubles per box
+        private int[] stack = new int[0];
+        private int[] levels = new int[0];
+        private double[] boxes = new double[0];
+        private double[] bounds = new double[0];  // lower bound on the metric to each box
+        private final double[] box;
+        private double bound = 0.0;
+        private final double[] query;
+        private int top = 0;
+        private int level = 0;
+        private final NeighborHeap heap = new NeighborHeap();
+
+        public Search(int dimension) {
+            width = 2 * dimension;
+            box = new double[width];
+            query = new double[dimension];
+        }
+
+        public void begin(int k, int treeDepth) {
+            heap.reset(k);
+            top = 0;
+            int capacity = 2 * (treeDepth + 1);
+            if (stack.length < capacity) {
+                stack = new int[capacity];
+                levels = new int[capacity];
+                boxes = new double[width * capacity];
+                bounds = new double[capacity];
+            }
+        }
+
+        /**
+         * Push a subtree whose box is a given box with one side replaced
+         * @param node   the root of the subtree
+         * @param l      its level
+         * @param from   the box to copy
+         * @param side   the side to replace
+         * @param value  the new value of the side
+         * @param b      lower bound on the metric from the query to the new box
+         */
+        public void push(int node, int l, double[] from, int side, double value, double b) {
+            stack[top] = node;
+            levels[top] = l;
+            bounds[top] = b;
+            System.arraycopy(from, 0, boxes, width * top, width);
+            boxes[width * top + side] = value;
+            ++top;
+        }
+
+        /**
+         * Pop a subtree, leaving its box in box, its level in level and its bound in bound
+         * @return the root of the subtree
+         */
+        public int pop() {
+            --top;
+            bound = bounds[top];
+            System.arraycopy(boxes, width * top, box, 0, width);
+            level = levels[top];
+            return stack[top];
+        }
+
+        /**
+         * Empty the heap, nearest first
+         */
+        public int[] result() {
+            int[] ids = new int[heap.size()];
+            heap.drain(ids);
+            return ids;
+        }
+    }
+}
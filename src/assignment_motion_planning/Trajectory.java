@@ -1,17 +1,22 @@
 package assignment_motion_planning;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 public class Trajectory {
-    private List<Vector> controls = new ArrayList<>();
-    private List<Double> durations = new ArrayList<>();
-    
+    // coordinates of the controls, controlDimension per control
+    private double[] controls = new double[0];
+    private double[] durations = new double[4];
+    private int controlDimension = 0;
+    private int size = 0;
+    // running total of the durations with the Kahan compensation of its rounding error
+    private double total = 0.0;
+    private double compensation = 0.0;
+
     /**
      * Constructor
      */
     public Trajectory() {}
-    
+
     /**
      * Constructor
      * @param control   the initial control
@@ -20,76 +25,128 @@ public class Trajectory {
     public Trajectory(Vector control, double duration) {
         addControl(control, duration);
     }
-    
+
     /**
      * Get the index-th control
      * @param index the index of the controls
      * @return the index-th control
      */
     public Vector getControl(int index) {
-        return controls.get(index);
+        assert(index >= 0 && index < size);
+        return new Vector(Arrays.copyOfRange(controls, controlDimension * index, controlDimension * (index + 1)));
     }
-    
+
+    /**
+     * Copy the index-th control into an array, without allocating
+     * @param index   the index of the controls
+     * @param result  output, getControlDimension() coordinates
+     */
+    public void getControl(int index, double[] result) {
+        assert(index >= 0 && index < size);
+        System.arraycopy(controls, controlDimension * index, result, 0, controlDimension);
+    }
+
+    /**
+     * Get the dimension of the controls
+     * @return the dimension, or 0 for an empty trajectory
+     */
+    public int getControlDimension() {
+        return controlDimension;
+    }
+
     /**
      * Get the index-th duration
      * @param index the index of the controls
      * @return the index-th control
      */
-    @SuppressWarnings("boxing")
     public double getDuration(int index) {
-        return durations.get(index);
+        assert(index >= 0 && index < size);
+        return durations[index];
     }
-    
+
     /**
      * Get the number of actions in the trajectory
      * @return the number of actions in the trajectory
      */
     public int size() {
-        return controls.size();
+        return size;
     }
-    
+
     /**
      * Append a trajectory to this trajectory
      * @param trajectory a trajectory
      */
     public void append(Trajectory trajectory) {
-        for (int i = 0; i < trajectory.size(); ++i) {
-            addControl(trajectory.getControl(i), trajectory.getDuration(i));
-        }
+        if (trajectory.size == 0)
+            return;
+        if (size == 0)
+            controlDimension = trajectory.controlDimension;
+        assert(trajectory.controlDimension == controlDimension);
+        reserve(size + trajectory.size);
+        System.arraycopy(trajectory.controls, 0, controls, controlDimension * size, controlDimension * trajectory.size);
+        System.arraycopy(trajectory.durations, 0, durations, size, trajectory.size);
+        for (int i = 0; i < trajectory.size; ++i)
+            accumulate(trajectory.durations[i]);
+        size += trajectory.size;
     }
-    
+
     /**
      * @param control   a control
      * @param duration  corresponding duration
      */
-    @SuppressWarnings("boxing")
     public void addControl(Vector control, double duration) {
         assert(control != null);
         assert(duration > 0);
-        controls.add(control);
-        durations.add(duration);
-        
+        if (size == 0)
+            controlDimension = control.getDimension();
+        assert(control.getDimension() == controlDimension);
+        reserve(size + 1);
+        System.arraycopy(control.values(), 0, controls, controlDimension * size, controlDimension);
+        durations[size] = duration;
+        accumulate(duration);
+        ++size;
     }
-    
+
     /**
      * Compute the total duration
-     * Note: the sum function implements Kahan summation algorithm
+     * Note: the total is kept with the Kahan summation algorithm as controls are added
      * @return the total duration
      */
-    @SuppressWarnings("boxing")
     public double totalTime() {
-        return durations.stream().mapToDouble(t -> t).sorted().sum();
+        return total;
     }
-    
-    
+
+    /**
+     * Make room for a number of controls
+     * @param capacity the number of controls
+     */
+    private void reserve(int capacity) {
+        if (capacity > durations.length)
+            durations = Arrays.copyOf(durations, Math.max(capacity, 2 * durations.length));
+        if (controlDimension * durations.length > controls.length)
+            controls = Arrays.copyOf(controls, controlDimension * durations.length);
+    }
+
+    /**
+     * Add a duration to the total, carrying the low-order bits lost to rounding into
+     * the next addition
+     * @param duration the duration
+     */
+    private void accumulate(double duration) {
+        double y = duration - compensation;
+        double t = total + y;
+        compensation = (t - total) - y;
+        total = t;
+    }
+
     /**
      * String representation of the trajectory
      */
     @Override
     public String toString() {
         StringBuilder result = new StringBuilder("Trajectory:");
-        for (int i = 0; i < controls.size(); ++i) {
-            result.append(String.format(" (%s, %.2f)", controls.get(i).toString(), durations.get(i)));
+        for (int i = 0; i < size; ++i) {
+            result.append(String.format(" (%s, %.2f)", getControl(i).toString(), durations[i]));
         }
         return result.toString();
     }
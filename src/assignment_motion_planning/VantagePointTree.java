@@ -0,0 +1,212 @@
+package assignment_motion_planning;
+
+import java.util.Arrays;
+
+/**
+ * Incremental vantage point tree that only calls Robot.getMetric, which must satisfy the
+ * triangle inequality. New configurations go into leaf buckets; a full bucket picks one
+ * of its configurations as the vantage point and splits the rest at the median distance
+ * from it. Each child keeps the range of distances from the vantage point to its
+ * configurations, so a query skips a child when the triangle inequality shows that
+ * nothing in it can beat the K-th best so far or lie within the radius.
+ * The following paper describes the structure.
+ * Peter N. Yianilos,
+ * Data Structures and Algorithms for Nearest Neighbor Search in General Metric Spaces,
+ * Proceedings of the Fourth Annual ACM-SIAM Symposium on Discrete Algorithms, pp. 311-321, 1993.
+ */
+public class VantagePointTree implements NearestNeighbors {
+    private static final int BUCKET_SIZE = 16;  // configurations in a leaf before it splits
+    private static final double TOLERANCE = 1e-12;  // relative rounding error allowed in the triangle inequality
+    private final Robot robot;
+    private final ConfigurationStore store;
+    private final int dimension;
+    private Node root = new Node();
+    private int size = 0;
+    private final ThreadLocal<NeighborHeap> heaps = ThreadLocal.withInitial(NeighborHeap::new);
+
+    /**
+     * A leaf holds a bucket; an inner node holds a vantage point and two children
+     */
+    private static final class Node {
+        private int[] bucket = new int[BUCKET_SIZE];  // null for an inner node
+        private int count = 0;                        // configurations in the bucket
+        private int capacity = BUCKET_SIZE;           // split when the bucket holds this many
+        private int vantage = -1;
+        private double median;                        // inside if the distance is smaller
+        private Node inside;
+        private Node outside;
+        private double insideMin, insideMax;          // distances from the vantage point to the inside
+        private double outsideMin, outsideMax;        // distances from the vantage point to the outside
+    }
+
+    /**
+     * Constructor
+     * @param robot  the robot whose metric is used
+     * @param store  the store of the configurations
+     */
+    public VantagePointTree(Robot robot, ConfigurationStore store) {
+        assert(robot != null && store.getDimension() == robot.getDimension());
+        this.robot = robot;
+        this.store = store;
+        this.dimension = robot.getDimension();
+    }
+
+    @Override
+    public ConfigurationStore getStore() {
+        return store;
+    }
+
+    @Override
+    public void add(int id) {
+        assert(id == size && id < store.size());
+        int item = size++;
+        double[] coordinates = store.values();
+        Node node = root;
+        while (node.bucket == null) {
+            double d = robot.getMetric(coordinates, dimension * node.vantage, coordinates, dimension * item);
+            if (d < node.median) {
+                node.insideMin = Math.min(node.insideMin, d);
+                node.insideMax = Math.max(node.insideMax, d);
+                node = node.inside;
+            } else {
+                node.outsideMin = Math.min(node.outsideMin, d);
+                node.outsideMax = Math.max(node.outsideMax, d);
+                node = node.outside;
+            }
+        }
+        if (node.count == node.bucket.length)
+            node.bucket = Arrays.copyOf(node.bucket, 2 * node.count);
+        node.bucket[node.count++] = item;
+        if (node.count >= node.capacity)
+            split(node);
+    }
+
+    /**
+     * Turn a full leaf into an inner node, or let it grow if its configurations cannot
+     * be told apart by their distances from any vantage point
+     * @param node the leaf
+     */
+    private void split(Node node) {
+        int[] items = node.bucket;
+        int n = node.count;
+        // the first configuration is as good a vantage point as any for random samples
+        int vantage = items[0];
+        double[] coordinates = store.values();
+        double[] distances = new double[n - 1];
+        for (int i = 1; i < n; ++i)
+            distances[i - 1] = robot.getMetric(coordinates, dimension * vantage, coordinates, dimension * items[i]);
+        double[] sorted = distances.clone();
+        Arrays.sort(sorted);
+        double median = sorted[sorted.length / 2];
+        if (median <= sorted[0]) {
+            // at least half are as close as the closest; split above them if possible
+            int above = Arrays.binarySearch(sorted, Math.nextUp(median));
+            above = above >= 0 ? above : -above - 1;
+            if (above == sorted.length) {
+                node.capacity *= 2;
+                return;
+            }
+            median = sorted[above];
+        }
+        Node inside = new Node(), outside = new Node();
+        node.insideMin = node.outsideMin = Double.POSITIVE_INFINITY;
+        node.insideMax = node.outsideMax = Double.NEGATIVE_INFINITY;
+        for (int i = 1; i < n; ++i) {
+            double d = distances[i - 1];
+            Node child = d < median ? inside : outside;
+            if (child.count == child.bucket.length)
+                child.bucket = Arrays.copyOf(child.bucket, 2 * child.count);
+            child.bucket[child.count++] = items[i];
+            if (d < median) {
+                node.insideMin = Math.min(node.insideMin, d);
+                node.insideMax = Math.max(node.insideMax, d);
+            } else {
+                node.outsideMin = Math.min(node.outsideMin, d);
+                node.outsideMax = Math.max(node.outsideMax, d);
+            }
+        }
+        node.vantage = vantage;
+        node.median = median;
+        node.inside = inside;
+        node.outside = outside;
+        node.bucket = null;
+        node.count = 0;
+    }
+
+    @Override
+    public int[] nearestKIndices(Vector query, int K) {
+        assert(K > 0);
+        return search(query, K, Double.POSITIVE_INFINITY);
+    }
+
+    @Override
+    public int[] withinRadiusIndices(Vector query, double radius) {
+        assert(radius >= 0);
+        return search(query, Integer.MAX_VALUE, radius);
+    }
+
+    /**
+     * Find up to K configurations within a radius of a query
+     * @param query   the query configuration
+     * @param K       the maximum number of configurations
+     * @param radius  the radius
+     * @return the ids of the configurations, nearest first
+     */
+    private int[] search(Vector query, int K, double radius) {
+        assert(query.getDimension() == dimension);
+        NeighborHeap heap = heaps.get();
+        heap.reset(K);
+        search(root, query.values(), store.values(), radius, heap);
+        int[] items = new int[heap.size()];
+        heap.drain(items);
+        return items;
+    }
+
+    /**
+     * Search a subtree
+     * @param node         the root of the subtree
+     * @param query        coordinates of the query configuration
+     * @param coordinates  the array of the store
+     * @param radius       the radius
+     * @param heap         the best configurations so far
+     */
+    private void search(Node node, double[] query, double[] coordinates, double radius, NeighborHeap heap) {
+        if (node.bucket != null) {
+            for (int i = 0; i < node.count; ++i) {
+                double d = robot.getMetric(query, 0, coordinates, dimension * node.bucket[i]);
+                if (d <= radius)
+                    heap.offer(node.bucket[i], d);
+            }
+            return;
+        }
+        double d = robot.getMetric(query, 0, coordinates, dimension * node.vantage);
+        if (d <= radius)
+            heap.offer(node.vantage, d);
+        // by the triangle inequality, a configuration at distance r from the vantage
+        // point is at least |d - r| from the query
+        boolean insideFirst = d < node.median;
+        for (int pass = 0; pass < 2; ++pass) {
+            boolean inside = insideFirst == (pass == 0);
+            double min = inside ? node.insideMin : node.outsideMin;
+            double max = inside ? node.insideMax : node.outsideMax;
+            if (min > max)
+                continue;  // empty child
+            double bound = Math.max(0.0, Math.max(min - d, d - max));
+            // the metric is not exactly symmetric in floating point, so the bound may
+            // exceed the true distance by a rounding error of the distances it came from
+            if (bound - TOLERANCE * (d + max) <= Math.min(radius, heap.worst()))
+                search(inside ? node.inside : node.outside, query, coordinates, radius, heap);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        root = new Node();
+    }
+}
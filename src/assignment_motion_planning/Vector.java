@@ -30,6 +30,14 @@ public class Vector implements Comparable<Vector> {
         return vector[index];
     }
     
+    /**
+     * Get the coordinates without copying them; callers must not modify the array
+     * @return the backing array
+     */
+    double[] values() {
+        return vector;
+    }
+    
     @Override
     public int hashCode() {
         return Arrays.hashCode(vector);